@@ -6,6 +6,7 @@ import com.google.gson.stream.JsonWriter;
 import services.Managers;
 import services.TaskManager;
 import tasks.Epic;
+import tasks.IdGenerator;
 import tasks.Status;
 import tasks.Subtask;
 import tasks.Task;
@@ -45,10 +46,11 @@ public class Main {
 
     public static void main(String[] args) {
         manager = Managers.getDefaultTaskManager();
+        IdGenerator ids = manager.getIdGenerator();
 
-        Task singleTask1 = new Task("Сходить за грибами", "Выйти не позднее 7.00");
-        Task singleTask2 = new Task("Купить билеты для отпуска", "");
-        Task singleTask3 = new Task("Сходить в театр", "");
+        Task singleTask1 = new Task(ids, "Сходить за грибами", "Выйти не позднее 7.00");
+        Task singleTask2 = new Task(ids, "Купить билеты для отпуска", "");
+        Task singleTask3 = new Task(ids, "Сходить в театр", "");
         manager.addTask(singleTask1);
         manager.addTask(singleTask2);
         manager.addTask(singleTask3);
@@ -59,10 +61,10 @@ public class Main {
 
 //        System.out.println(manager.getTasks());
 
-        Epic epic1 = new Epic("Переезд", "Описание Эпика1");
-        Subtask subtask1 = new Subtask("Собрать коробки", "", Status.NEW, epic1.getId());
-        Subtask subtask2 = new Subtask("Упаковать кошку", "", Status.IN_PROGRESS, epic1.getId());
-        Subtask subtask3 = new Subtask("Сказать прощальные слова", "", Status.NEW, epic1.getId());
+        Epic epic1 = new Epic(ids, "Переезд", "Описание Эпика1");
+        Subtask subtask1 = new Subtask(ids, "Собрать коробки", "", Status.NEW, epic1.getId());
+        Subtask subtask2 = new Subtask(ids, "Упаковать кошку", "", Status.IN_PROGRESS, epic1.getId());
+        Subtask subtask3 = new Subtask(ids, "Сказать прощальные слова", "", Status.NEW, epic1.getId());
         manager.addEpic(epic1);
         manager.addSubtask(subtask1);
         manager.addSubtask(subtask2);
@@ -74,9 +76,9 @@ public class Main {
         //System.out.println(manager.getEpicSubtasks(epic1.getId()));
         //System.out.println(manager.getEpicById(epic1.getId()));
 
-        int epic2 = manager.addEpic(new Epic("Важный эпик 2", "Описание Эпика2"));
-        int subtask21 = manager.addSubtask(new Subtask("Задача1", "", Status.DONE, epic2));
-        int subtask22 = manager.addSubtask(new Subtask("Задача2", "", Status.DONE, epic2));
+        int epic2 = manager.addEpic(new Epic(ids, "Важный эпик 2", "Описание Эпика2"));
+        int subtask21 = manager.addSubtask(new Subtask(ids, "Задача1", "", Status.DONE, epic2));
+        int subtask22 = manager.addSubtask(new Subtask(ids, "Задача2", "", Status.DONE, epic2));
 
 //        manager.getEpic(epic2);
 //        manager.getEpic(epic2);
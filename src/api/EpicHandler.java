@@ -4,9 +4,9 @@ import com.google.gson.JsonObject;
 import com.sun.net.httpserver.HttpExchange;
 import services.TaskManager;
 import tasks.Epic;
+import tasks.Type;
 
 import java.io.IOException;
-import java.util.List;
 
 public class EpicHandler extends TaskHandler {
     static final String PATH_NAME = "epics";
@@ -32,26 +32,29 @@ public class EpicHandler extends TaskHandler {
     void handleReadEpicSubtasks(HttpExchange exchange) throws IOException {
         try {
             int epicId = parseTaskIdFromUri(exchange);
-            String body = gson.toJson(taskManager.getEpicSubtasks(epicId).values(), List.class);
-            sendResponse(exchange, body, 200);
+            sendPage(exchange, taskManager.getVersion(Type.SUBTASK),
+                    (afterId, limit) -> taskManager.getEpicSubtasks(epicId, afterId, limit));
         } catch (Exception e) {
             sendResponse(exchange, 500);
         }
     }
 
+    @Override
+    void handleSchedule(HttpExchange exchange) throws IOException {
+        sendResponse(exchange, 500);
+    }
+
     @Override
     void handleReadAll(HttpExchange exchange) throws IOException {
-        String body = gson.toJson(taskManager.getEpics().values(), List.class);
-        sendResponse(exchange, body, 200);
+        sendPage(exchange, taskManager.getVersion(Type.EPIC), taskManager::getEpics);
     }
 
     @Override
     void handleReadOne(HttpExchange exchange) throws IOException {
         try {
             int epicId = parseTaskIdFromUri(exchange);
-            if (taskManager.getEpics().containsKey(epicId)) {
-                String body = gson.toJson(taskManager.getEpic(epicId));
-                sendResponse(exchange, body, 200);
+            if (taskManager.containsEpic(epicId)) {
+                sendJson(exchange, taskManager.getEpic(epicId), 200);
             } else {
                 sendResponse(exchange, 404);
             }
@@ -64,7 +67,8 @@ public class EpicHandler extends TaskHandler {
     void handleCreate(HttpExchange exchange) throws IOException {
         try {
             JsonObject jsonObject = getJsonObjectFromRequestBody(exchange);
-            Epic epic = Epic.cloneWithNextId(gson.fromJson(jsonObject, Epic.class));
+            Epic epic = Epic.cloneWithId(gson.fromJson(jsonObject, Epic.class),
+                    taskManager.getIdGenerator().nextId());
             taskManager.addEpic(epic);
             sendResponse(exchange, 201);
         } catch (Exception e) {
@@ -78,7 +82,7 @@ public class EpicHandler extends TaskHandler {
             JsonObject jsonObject = getJsonObjectFromRequestBody(exchange);
             Epic epic = gson.fromJson(jsonObject, Epic.class);
 
-            if (taskManager.getEpics().containsKey(epic.getId())) {
+            if (taskManager.containsEpic(epic.getId())) {
                 taskManager.updateEpic(epic);
                 sendResponse(exchange, 200);
             } else {
@@ -93,7 +97,7 @@ public class EpicHandler extends TaskHandler {
     void handleDelete(HttpExchange exchange) throws IOException {
         try {
             int epicId = parseTaskIdFromUri(exchange);
-            if (taskManager.getEpics().containsKey(epicId)) {
+            if (taskManager.containsEpic(epicId)) {
                 taskManager.removeEpic(epicId);
                 sendResponse(exchange, 200);
             } else {
@@ -0,0 +1,11 @@
+package api;
+
+/*
+ * На чём HttpTaskServer выполняет запросы: VIRTUAL - виртуальный поток на каждый запрос,
+ * BOUNDED - пул платформенных потоков по числу ядер, SINGLE - поток диспетчера HttpServer, как раньше.
+ */
+public enum ExecutorMode {
+    VIRTUAL,
+    BOUNDED,
+    SINGLE
+}
@@ -12,17 +12,31 @@ import services.TaskManager;
 import tasks.Status;
 import tasks.Task;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 abstract class Handler implements HttpHandler {
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+    static final String PRETTY_PARAMETER = "pretty";
+    static final String LIMIT_PARAMETER = "limit";
+    static final String AFTER_PARAMETER = "after";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String ETAG_EPOCH = Long.toString(System.currentTimeMillis(), 36);
     protected final Gson gson = new GsonBuilder()
-            .setPrettyPrinting()
             .serializeNulls()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateAdapter())
             .registerTypeAdapter(Duration.class, new DurationAdapter())
@@ -39,12 +53,45 @@ abstract class Handler implements HttpHandler {
         return requestPath.split("/", -1);
     }
 
+    protected Map<String, String> getQueryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) return parameters;
+
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator >= 0 ? pair.substring(0, separator) : pair;
+            String value = separator >= 0 ? pair.substring(separator + 1) : "";
+            parameters.put(URLDecoder.decode(name, DEFAULT_CHARSET), URLDecoder.decode(value, DEFAULT_CHARSET));
+        }
+        return parameters;
+    }
+
+    /*
+     * В параметрах запроса дата принимается как в JSON (dd.MM.yyyy HH:mm) или в ISO-8601.
+     */
+    protected static LocalDateTime parseDateTime(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return LocalDateTime.parse(value, Task.DATE_TIME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(value);
+        }
+    }
+
+    /*
+     * Если заголовки другого ответа уже ушли (ошибка посреди потоковой записи), второй ответ невозможен:
+     * бросается IOException, сервер обрывает соединение, и клиент видит ошибку, а не обрезанный ответ.
+     */
     protected void sendResponse(HttpExchange exchange,
                                 String responseString,
                                 int responseCode) throws IOException {
-        try (OutputStream out = exchange.getResponseBody()) {
-            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=" + DEFAULT_CHARSET);
-            exchange.sendResponseHeaders(responseCode, 0);
+        if (exchange.getResponseCode() != -1) {
+            throw new IOException("Ответ " + exchange.getResponseCode() + " уже начат, код " + responseCode
+                    + " не отправлен.");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=" + DEFAULT_CHARSET);
+        try (OutputStream out = HttpCompression.openResponseBody(exchange, responseCode)) {
             out.write(responseString.getBytes(DEFAULT_CHARSET));
         }
     }
@@ -53,6 +100,110 @@ abstract class Handler implements HttpHandler {
         sendResponse(exchange, "", responseCode);
     }
 
+    /*
+     * Ответ пишется в тело через JsonWriter по мере сериализации, без промежуточной строки, так что
+     * память на запрос не растёт с размером списка. Коллекция пишется массивом поэлементно.
+     * Сжатие по Accept-Encoding - в HttpCompression.
+     * По умолчанию вывод компактный, ?pretty=true включает отступы.
+     * Заголовки уходят только после заполнения буфера, поэтому ошибка сериализации небольшого ответа
+     * оставляет возможность ответить 500. При ошибке поток не закрывается: закрытие отправило бы
+     * заголовки или завершило бы тело, и клиент принял бы обрезанный ответ за целый.
+     */
+    protected void sendJson(HttpExchange exchange, Object value, int responseCode) throws IOException {
+        boolean pretty = isPrettyRequested(exchange);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=" + DEFAULT_CHARSET);
+        OutputStream body = HttpCompression.openResponseBody(exchange, responseCode);
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(
+                new BufferedOutputStream(body, RESPONSE_BUFFER_SIZE), DEFAULT_CHARSET));
+        if (pretty) {
+            writer.setIndent("  ");
+        }
+        if (value instanceof Collection<?> collection) {
+            writer.beginArray();
+            for (Object element : collection) {
+                writeJsonValue(writer, element);
+            }
+            writer.endArray();
+        } else {
+            writeJsonValue(writer, value);
+        }
+        writer.close();
+    }
+
+    private void writeJsonValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else {
+            gson.toJson(value, value.getClass(), writer);
+        }
+    }
+
+    /*
+     * Постраничный ответ по возрастанию id: ?limit= - размер страницы, ?after= - id последней записи
+     * предыдущей страницы. Если записи остались, id последней отданной уходит в заголовке X-Next-Cursor.
+     * Без limit отдаются все записи после after.
+     */
+    protected <T extends Task> void sendPage(HttpExchange exchange, long version,
+                                             BiFunction<Integer, Integer, List<T>> pageReader) throws IOException {
+        Map<String, String> parameters = getQueryParameters(exchange);
+        int afterId;
+        int limit;
+        try {
+            afterId = parameters.containsKey(AFTER_PARAMETER) ? Integer.parseInt(parameters.get(AFTER_PARAMETER))
+                    : Integer.MIN_VALUE;
+            limit = parameters.containsKey(LIMIT_PARAMETER) ? Integer.parseInt(parameters.get(LIMIT_PARAMETER)) : 0;
+        } catch (NumberFormatException e) {
+            sendResponse(exchange, 400);
+            return;
+        }
+        if (limit < 0) {
+            sendResponse(exchange, 400);
+            return;
+        }
+        if (isNotModified(exchange, version)) return;
+
+        List<T> page = pageReader.apply(afterId, limit > 0 && limit < Integer.MAX_VALUE ? limit + 1 : limit);
+        if (limit > 0 && page.size() > limit) {
+            page = page.subList(0, limit);
+            exchange.getResponseHeaders().set(NEXT_CURSOR_HEADER, String.valueOf(page.getLast().getId()));
+        }
+        sendJson(exchange, page, 200);
+    }
+
+    /*
+     * ETag строится из версий менеджера, прочитанных до сериализации, и метки запуска сервера,
+     * чтобы после перезапуска счётчики с нуля не совпали со старыми тегами. Если клиент прислал
+     * тот же тег в If-None-Match, отправляется 304 без тела и возвращается true.
+     */
+    protected boolean isNotModified(HttpExchange exchange, long... versions) throws IOException {
+        StringBuilder etag = new StringBuilder("\"").append(ETAG_EPOCH);
+        for (long version : versions) {
+            etag.append('-').append(version);
+        }
+        String currentTag = etag.append('"').toString();
+        exchange.getResponseHeaders().set("ETag", currentTag);
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || HttpCompression.withoutEncodingSuffix(candidate).equals(currentTag)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected boolean isPrettyRequested(HttpExchange exchange) {
+        return "true".equals(getQueryParameters(exchange).get(PRETTY_PARAMETER));
+    }
+
     static class LocalDateAdapter extends TypeAdapter<LocalDateTime> {
 
         @Override
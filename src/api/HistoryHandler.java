@@ -18,8 +18,9 @@ public class HistoryHandler extends Handler {
         String requestMethod = exchange.getRequestMethod();
 
         if (pathParts.length == 2 && requestMethod.equals("GET") && PATH_NAME.equals(pathParts[1])) {
-            String body = gson.toJson(taskManager.getHistory());
-            sendResponse(exchange, body, 200);
+            if (!isNotModified(exchange, taskManager.getHistoryVersion(), taskManager.getVersion())) {
+                sendJson(exchange, taskManager.getHistory(), 200);
+            }
         } else {
             sendResponse(exchange, 500);
         }
@@ -0,0 +1,224 @@
+package api;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * Сжатие по Accept-Encoding (gzip или deflate). Первые THRESHOLD байт ответа копятся в памяти: если ответ
+ * в них уместился, он уходит несжатым с точной длиной, иначе отправляются заголовки, включается сжатие
+ * (если клиент его принимает) и дальше тело идёт потоком. До отправки заголовков ответ можно бросить
+ * и ответить другим кодом.
+ * К ETag сжатого ответа добавляется суффикс кодировки, чтобы представления различались; при сравнении
+ * If-None-Match суффикс отбрасывается. Тела запросов с Content-Encoding распаковывает RequestDecoder.
+ */
+final class HttpCompression {
+    static final int THRESHOLD = 1024;
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    static final int MAX_DECODED_BODY_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private HttpCompression() {
+    }
+
+    /*
+     * Кодировка с наибольшим q из поддерживаемых, при равенстве gzip; null - сжимать нельзя.
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return null;
+
+        double gzipQuality = -1;
+        double deflateQuality = -1;
+        double anyQuality = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case GZIP, "x-gzip" -> gzipQuality = Math.max(gzipQuality, quality);
+                case DEFLATE -> deflateQuality = Math.max(deflateQuality, quality);
+                case "*" -> anyQuality = quality;
+                default -> {
+                }
+            }
+        }
+        if (gzipQuality < 0) gzipQuality = anyQuality;
+        if (deflateQuality < 0) deflateQuality = anyQuality;
+        if (gzipQuality <= 0 && deflateQuality <= 0) return null;
+        return gzipQuality >= deflateQuality ? GZIP : DEFLATE;
+    }
+
+    /*
+     * Поток тела ответа. Заголовки отправляются при переполнении порога или при закрытии потока,
+     * поэтому все заголовки ответа нужно выставить до первой записи.
+     */
+    static OutputStream openResponseBody(HttpExchange exchange, int responseCode) {
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        String encoding = negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        return new DeferredOutputStream(exchange, responseCode, encoding);
+    }
+
+    static String withoutEncodingSuffix(String etag) {
+        for (String encoding : new String[]{GZIP, DEFLATE}) {
+            String suffix = "-" + encoding + "\"";
+            if (etag.endsWith(suffix)) {
+                return etag.substring(0, etag.length() - suffix.length()) + "\"";
+            }
+        }
+        return etag;
+    }
+
+    private static final class DeferredOutputStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final int responseCode;
+        private final String encoding;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream(THRESHOLD);
+        private OutputStream out;
+
+        DeferredOutputStream(HttpExchange exchange, int responseCode, String encoding) {
+            this.exchange = exchange;
+            this.responseCode = responseCode;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out == null && pending.size() + len <= THRESHOLD) {
+                pending.write(b, off, len);
+                return;
+            }
+            if (out == null) {
+                startStreaming();
+            }
+            out.write(b, off, len);
+        }
+
+        private void startStreaming() throws IOException {
+            if (encoding == null) {
+                exchange.sendResponseHeaders(responseCode, 0);
+                out = exchange.getResponseBody();
+                pending.writeTo(out);
+                pending = null;
+                return;
+            }
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Encoding", encoding);
+            String etag = headers.getFirst("ETag");
+            if (etag != null && etag.endsWith("\"")) {
+                headers.set("ETag", etag.substring(0, etag.length() - 1) + "-" + encoding + "\"");
+            }
+            exchange.sendResponseHeaders(responseCode, 0);
+            OutputStream body = exchange.getResponseBody();
+            out = GZIP.equals(encoding) ? new GZIPOutputStream(body, BUFFER_SIZE)
+                    : new DeflaterOutputStream(body);
+            pending.writeTo(out);
+            pending = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+                return;
+            }
+            int length = pending.size();
+            exchange.sendResponseHeaders(responseCode, length == 0 ? -1 : length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                pending.writeTo(body);
+            }
+        }
+    }
+
+    /*
+     * Распаковывает тело запроса до передачи обработчику. Распакованное тело ограничено
+     * MAX_DECODED_BODY_SIZE байт: несколько килобайт сжатых данных могут развернуться в гигабайты,
+     * поэтому больше лимита не читается, и запрос получает 413. Повреждённые данные - 400,
+     * неизвестная кодировка - 415.
+     */
+    static final class RequestDecoder extends Filter {
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            if (encoding != null) {
+                byte[] decoded;
+                try {
+                    InputStream stream;
+                    switch (encoding.trim().toLowerCase()) {
+                        case GZIP, "x-gzip" -> stream = new GZIPInputStream(exchange.getRequestBody());
+                        case DEFLATE -> stream = new InflaterInputStream(exchange.getRequestBody());
+                        case "identity", "" -> stream = null;
+                        default -> {
+                            reject(exchange, 415);
+                            return;
+                        }
+                    }
+                    decoded = stream != null ? readLimited(stream) : null;
+                } catch (IOException e) {
+                    reject(exchange, 400);
+                    return;
+                }
+                if (decoded != null && decoded.length > MAX_DECODED_BODY_SIZE) {
+                    reject(exchange, 413);
+                    return;
+                }
+                if (decoded != null) {
+                    exchange.setStreams(new ByteArrayInputStream(decoded), null);
+                }
+            }
+            chain.doFilter(exchange);
+        }
+
+        /*
+         * На байт больше лимита, чтобы отличить тело ровно в MAX_DECODED_BODY_SIZE от превышения.
+         */
+        private static byte[] readLimited(InputStream stream) throws IOException {
+            try (stream) {
+                return stream.readNBytes(MAX_DECODED_BODY_SIZE + 1);
+            }
+        }
+
+        private static void reject(HttpExchange exchange, int responseCode) throws IOException {
+            exchange.sendResponseHeaders(responseCode, -1);
+            exchange.close();
+        }
+
+        @Override
+        public String description() {
+            return "Распаковка тела запроса по Content-Encoding";
+        }
+    }
+}
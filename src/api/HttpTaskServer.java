@@ -1,20 +1,25 @@
 package api;
 
 import com.sun.net.httpserver.HttpServer;
+import services.DurabilityPolicy;
 import services.FileBackedTaskManager;
 import services.Managers;
+import services.StorageMode;
 import services.TaskManager;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.lang.System.getProperty;
 
 public class HttpTaskServer {
     private static final int DEFAULT_PORT = 8080;
     private final HttpServer httpServer;
+    private final ExecutorService executor;
 
     public HttpTaskServer() {
         this(DEFAULT_PORT, Managers.getDefaultTaskManager());
@@ -25,23 +30,49 @@ public class HttpTaskServer {
     }
 
     public HttpTaskServer(int port, TaskManager taskManager) {
+        this(port, taskManager, ExecutorMode.VIRTUAL);
+    }
+
+    /*
+     * В режимах VIRTUAL и BOUNDED запросы идут параллельно, поэтому менеджер, не рассчитанный
+     * на несколько потоков, оборачивается блокировкой (Managers.getThreadSafeTaskManager). Файловый
+     * менеджер в этих режимах должен быть с отложенной записью.
+     */
+    public HttpTaskServer(int port, TaskManager taskManager, ExecutorMode executorMode) {
+        this.executor = switch (executorMode) {
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+            case BOUNDED -> Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            case SINGLE -> null;
+        };
+        if (executor != null) {
+            taskManager = Managers.getThreadSafeTaskManager(taskManager);
+        }
         try {
             this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
-            httpServer.createContext("/" + TaskHandler.PATH_NAME, new TaskHandler(taskManager));
-            httpServer.createContext("/" + EpicHandler.PATH_NAME, new EpicHandler(taskManager));
-            httpServer.createContext("/" + SubtaskHandler.PATH_NAME, new SubtaskHandler(taskManager));
-            httpServer.createContext("/" + HistoryHandler.PATH_NAME, new HistoryHandler(taskManager));
-            httpServer.createContext("/" + PrioritizedHandler.PATH_NAME, new PrioritizedHandler(taskManager));
+            httpServer.setExecutor(executor);
+            addContext(TaskHandler.PATH_NAME, new TaskHandler(taskManager));
+            addContext(EpicHandler.PATH_NAME, new EpicHandler(taskManager));
+            addContext(SubtaskHandler.PATH_NAME, new SubtaskHandler(taskManager));
+            addContext(HistoryHandler.PATH_NAME, new HistoryHandler(taskManager));
+            addContext(PrioritizedHandler.PATH_NAME, new PrioritizedHandler(taskManager));
         } catch (IOException e) {
+            if (executor != null) {
+                executor.shutdown();
+            }
             throw new RuntimeException("Ошибка запуска HTTP-сервера на " + port + " порту.");
         }
     }
 
+    private void addContext(String pathName, Handler handler) {
+        httpServer.createContext("/" + pathName, handler).getFilters().add(new HttpCompression.RequestDecoder());
+    }
+
     public static void main(String[] args) {
         String dataFileDirectory = Paths.get(getProperty("user.dir"), "data").toString();
         String testManagerDataFile = "testManagerData.csv";
         File dataFile = Paths.get(dataFileDirectory, testManagerDataFile).toFile();
-        TaskManager fileBackedTaskManager = FileBackedTaskManager.loadFromFile(dataFile);
+        TaskManager fileBackedTaskManager = FileBackedTaskManager.loadFromFile(dataFile, StorageMode.JOURNAL,
+                DurabilityPolicy.INTERVAL);
 
         HttpTaskServer taskServer = new HttpTaskServer(fileBackedTaskManager);
         taskServer.start();
@@ -60,6 +91,9 @@ public class HttpTaskServer {
             return;
         }
         httpServer.stop(1);
+        if (executor != null) {
+            executor.shutdown();
+        }
         System.out.println("HTTP-сервер остановлен.");
     }
 }
@@ -2,8 +2,14 @@ package api;
 
 import com.sun.net.httpserver.HttpExchange;
 import services.TaskManager;
+import tasks.Task;
+import tasks.Type;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
 
 public class PrioritizedHandler extends Handler {
     static final String PATH_NAME = "prioritized";
@@ -18,10 +24,46 @@ public class PrioritizedHandler extends Handler {
         String requestMethod = exchange.getRequestMethod();
 
         if (pathParts.length == 2 && requestMethod.equals("GET") && PATH_NAME.equals(pathParts[1])) {
-            String body = gson.toJson(taskManager.getPrioritizedTasks());
-            sendResponse(exchange, body, 200);
+            Map<String, String> parameters = getQueryParameters(exchange);
+            parameters.remove(PRETTY_PARAMETER);
+            if (parameters.isEmpty()) {
+                if (!isNotModified(exchange, taskManager.getVersion(Type.TASK), taskManager.getVersion(Type.SUBTASK))) {
+                    sendJson(exchange, taskManager.getPrioritizedTasks(), 200);
+                }
+            } else {
+                handleReadRange(exchange, parameters);
+            }
         } else {
             sendResponse(exchange, 500);
         }
     }
+
+    private void handleReadRange(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        LocalDateTime from;
+        LocalDateTime to;
+        LocalDateTime cursor;
+        int limit;
+        try {
+            from = parseDateTime(parameters.get("from"));
+            to = parseDateTime(parameters.get("to"));
+            cursor = parseDateTime(parameters.get("cursor"));
+            limit = parameters.containsKey("limit") ? Integer.parseInt(parameters.get("limit")) : 0;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            sendResponse(exchange, 400);
+            return;
+        }
+        if (limit < 0 || (from != null && to != null && from.isAfter(to))) {
+            sendResponse(exchange, 400);
+            return;
+        }
+        if (isNotModified(exchange, taskManager.getVersion(Type.TASK), taskManager.getVersion(Type.SUBTASK))) return;
+
+        List<Task> tasks = taskManager.getPrioritizedTasks(from, to, limit > 0 ? limit + 1 : 0, cursor);
+        if (limit > 0 && tasks.size() > limit) {
+            tasks = tasks.subList(0, limit);
+            LocalDateTime nextCursor = tasks.getLast().getStartTime();
+            exchange.getResponseHeaders().set(NEXT_CURSOR_HEADER, nextCursor.format(Task.DATE_TIME_FORMATTER));
+        }
+        sendJson(exchange, tasks, 200);
+    }
 }
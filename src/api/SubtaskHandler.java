@@ -4,9 +4,9 @@ import com.google.gson.JsonObject;
 import com.sun.net.httpserver.HttpExchange;
 import services.TaskManager;
 import tasks.Subtask;
+import tasks.Type;
 
 import java.io.IOException;
-import java.util.List;
 
 public class SubtaskHandler extends TaskHandler {
     static final String PATH_NAME = "subtasks";
@@ -23,17 +23,15 @@ public class SubtaskHandler extends TaskHandler {
 
     @Override
     void handleReadAll(HttpExchange exchange) throws IOException {
-        String body = gson.toJson(taskManager.getSubtasks().values(), List.class);
-        sendResponse(exchange, body, 200);
+        sendPage(exchange, taskManager.getVersion(Type.SUBTASK), taskManager::getSubtasks);
     }
 
     @Override
     void handleReadOne(HttpExchange exchange) throws IOException {
         try {
             int subtaskId = parseTaskIdFromUri(exchange);
-            if (taskManager.getSubtasks().containsKey(subtaskId)) {
-                String body = gson.toJson(taskManager.getSubtask(subtaskId));
-                sendResponse(exchange, body, 200);
+            if (taskManager.containsSubtask(subtaskId)) {
+                sendJson(exchange, taskManager.getSubtask(subtaskId), 200);
             } else {
                 sendResponse(exchange, 404);
             }
@@ -46,9 +44,10 @@ public class SubtaskHandler extends TaskHandler {
     void handleCreate(HttpExchange exchange) throws IOException {
         try {
             JsonObject jsonObject = getJsonObjectFromRequestBody(exchange);
-            Subtask subtask = Subtask.cloneWithNextId(gson.fromJson(jsonObject, Subtask.class));
+            Subtask subtask = Subtask.cloneWithId(gson.fromJson(jsonObject, Subtask.class),
+                    taskManager.getIdGenerator().nextId());
 
-            if (taskManager.getEpics().containsKey(subtask.getEpicId())) {
+            if (taskManager.containsEpic(subtask.getEpicId())) {
                 if (taskManager.isIntersectedTask(subtask)) {
                     sendResponse(exchange, 406);
                 } else {
@@ -63,13 +62,30 @@ public class SubtaskHandler extends TaskHandler {
         }
     }
 
+    @Override
+    void handleSchedule(HttpExchange exchange) throws IOException {
+        try {
+            JsonObject jsonObject = getJsonObjectFromRequestBody(exchange);
+            Subtask subtask = Subtask.cloneWithId(gson.fromJson(jsonObject, Subtask.class),
+                    taskManager.getIdGenerator().nextId());
+
+            if (taskManager.containsEpic(subtask.getEpicId())) {
+                sendScheduleResponse(exchange, subtask);
+            } else {
+                sendResponse(exchange, 404);
+            }
+        } catch (Exception e) {
+            sendResponse(exchange, 500);
+        }
+    }
+
     @Override
     void handleUpdate(HttpExchange exchange) throws IOException {
         try {
             JsonObject jsonObject = getJsonObjectFromRequestBody(exchange);
             Subtask subtask = gson.fromJson(jsonObject, Subtask.class);
 
-            if (taskManager.getSubtasks().containsKey(subtask.getId())) {
+            if (taskManager.containsSubtask(subtask.getId())) {
                 if (taskManager.isIntersectedTask(subtask)) {
                     sendResponse(exchange, 406);
                 } else {
@@ -88,7 +104,7 @@ public class SubtaskHandler extends TaskHandler {
     void handleDelete(HttpExchange exchange) throws IOException {
         try {
             int subtaskId = parseTaskIdFromUri(exchange);
-            if (taskManager.getSubtasks().containsKey(subtaskId)) {
+            if (taskManager.containsSubtask(subtaskId)) {
                 taskManager.removeSubtask(subtaskId);
                 sendResponse(exchange, 200);
             } else {
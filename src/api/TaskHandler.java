@@ -6,14 +6,17 @@ import com.google.gson.JsonParser;
 import com.sun.net.httpserver.HttpExchange;
 import services.TaskManager;
 import tasks.Task;
+import tasks.Type;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 public class TaskHandler extends Handler {
     static final String PATH_NAME = "tasks";
+    static final String SCHEDULE_PATH_NAME = "schedule";
 
     TaskHandler(TaskManager taskManager) {
         super(taskManager);
@@ -42,6 +45,9 @@ public class TaskHandler extends Handler {
             case DELETE:
                 handleDelete(exchange);
                 break;
+            case SCHEDULE:
+                handleSchedule(exchange);
+                break;
             default:
                 sendResponse(exchange, 500);
         }
@@ -68,6 +74,9 @@ public class TaskHandler extends Handler {
                     }
             }
         } else if (pathParts.length == 3) {
+            if (SCHEDULE_PATH_NAME.equals(pathParts[2])) {
+                return requestMethod.equals("POST") ? Endpoint.SCHEDULE : Endpoint.UNKNOWN;
+            }
             switch (requestMethod) {
                 case "GET":
                     return Endpoint.READ_ONE;
@@ -79,16 +88,14 @@ public class TaskHandler extends Handler {
     }
 
     void handleReadAll(HttpExchange exchange) throws IOException {
-        String body = gson.toJson(taskManager.getTasks().values(), List.class);
-        sendResponse(exchange, body, 200);
+        sendPage(exchange, taskManager.getVersion(Type.TASK), taskManager::getTasks);
     }
 
     void handleReadOne(HttpExchange exchange) throws IOException {
         try {
             int taskId = parseTaskIdFromUri(exchange);
-            if (taskManager.getTasks().containsKey(taskId)) {
-                String body = gson.toJson(taskManager.getTask(taskId));
-                sendResponse(exchange, body, 200);
+            if (taskManager.containsTask(taskId)) {
+                sendJson(exchange, taskManager.getTask(taskId), 200);
             } else {
                 sendResponse(exchange, 404);
             }
@@ -100,7 +107,8 @@ public class TaskHandler extends Handler {
     void handleCreate(HttpExchange exchange) throws IOException {
         try {
             JsonObject jsonObject = getJsonObjectFromRequestBody(exchange);
-            Task task = Task.cloneWithNextId(gson.fromJson(jsonObject, Task.class));
+            Task task = Task.cloneWithId(gson.fromJson(jsonObject, Task.class),
+                    taskManager.getIdGenerator().nextId());
 
             if (taskManager.isIntersectedTask(task)) {
                 sendResponse(exchange, 406);
@@ -118,7 +126,7 @@ public class TaskHandler extends Handler {
             JsonObject jsonObject = getJsonObjectFromRequestBody(exchange);
             Task task = gson.fromJson(jsonObject, Task.class);
 
-            if (taskManager.getTasks().containsKey(task.getId())) {
+            if (taskManager.containsTask(task.getId())) {
                 if (taskManager.isIntersectedTask(task)) {
                     sendResponse(exchange, 406);
                 } else {
@@ -136,7 +144,7 @@ public class TaskHandler extends Handler {
     void handleDelete(HttpExchange exchange) throws IOException {
         try {
             int taskId = parseTaskIdFromUri(exchange);
-            if (taskManager.getTasks().containsKey(taskId)) {
+            if (taskManager.containsTask(taskId)) {
                 taskManager.removeTask(taskId);
                 sendResponse(exchange, 200);
             } else {
@@ -147,6 +155,37 @@ public class TaskHandler extends Handler {
         }
     }
 
+    void handleSchedule(HttpExchange exchange) throws IOException {
+        try {
+            JsonObject jsonObject = getJsonObjectFromRequestBody(exchange);
+            Task task = Task.cloneWithId(gson.fromJson(jsonObject, Task.class),
+                    taskManager.getIdGenerator().nextId());
+            sendScheduleResponse(exchange, task);
+        } catch (Exception e) {
+            sendResponse(exchange, 500);
+        }
+    }
+
+    protected void sendScheduleResponse(HttpExchange exchange, Task task) throws IOException {
+        LocalDateTime notBefore;
+        try {
+            String value = getQueryParameters(exchange).get("notBefore");
+            notBefore = value != null ? parseDateTime(value) : LocalDateTime.now().withSecond(0).withNano(0);
+        } catch (DateTimeParseException e) {
+            notBefore = null;
+        }
+        if (notBefore == null || task.getDuration() == null) {
+            sendResponse(exchange, 400);
+            return;
+        }
+
+        if (taskManager.scheduleEarliest(task, notBefore) < 0) {
+            sendResponse(exchange, 406);
+        } else {
+            sendJson(exchange, task, 201);
+        }
+    }
+
     protected int parseTaskIdFromUri(HttpExchange exchange) {
         String requestPath = exchange.getRequestURI().getPath();
         String[] pathParts = requestPath.split("/");
@@ -173,6 +212,7 @@ public class TaskHandler extends Handler {
         CREATE,
         UPDATE,
         DELETE,
+        SCHEDULE,
         UNKNOWN
     }
 }
@@ -0,0 +1,188 @@
+package services;
+
+import exceptions.ManagerLoadException;
+import exceptions.ManagerSaveException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/*
+ * Замена файла данных без окна, в котором он пуст или записан наполовину: содержимое с контрольной
+ * суммой в конце пишется во временный файл, сбрасывается на диск и атомарно переименовывается поверх
+ * старого. Прежняя версия перед заменой остаётся в .bak (жёсткая ссылка, если ФС позволяет).
+ * Файл начинается с метки "#crc32" и заканчивается концевиком "#crc32=xxxxxxxx" с CRC32 всего, что
+ * перед ним. Файл с меткой без концевика обрезан и считается повреждённым; файлы без метки (записанные
+ * до её появления) читаются целиком, концевик у них необязателен.
+ */
+final class AtomicDataFile {
+    static final String TEMP_SUFFIX = ".tmp";
+    static final String BACKUP_SUFFIX = ".bak";
+    private static final byte[] MARKER = "#crc32\n".getBytes(StandardCharsets.US_ASCII);
+    private static final String TRAILER_PREFIX = "\n#crc32=";
+    private static final int TRAILER_LENGTH = TRAILER_PREFIX.length() + 9;
+
+    private AtomicDataFile() {
+    }
+
+    static File tempFileOf(File file) {
+        return new File(file.getPath() + TEMP_SUFFIX);
+    }
+
+    static File backupFileOf(File file) {
+        return new File(file.getPath() + BACKUP_SUFFIX);
+    }
+
+    static void write(File file, byte[] content, boolean sync) {
+        File tempFile = tempFileOf(file);
+        writeTemp(tempFile, content, sync);
+        replace(tempFile, file);
+    }
+
+    static void writeTemp(File tempFile, byte[] content, boolean sync) {
+        CRC32 crc = new CRC32();
+        crc.update(MARKER);
+        crc.update(content);
+        String trailer = TRAILER_PREFIX + String.format("%08x", crc.getValue()) + "\n";
+        try (FileOutputStream stream = new FileOutputStream(tempFile)) {
+            stream.write(MARKER);
+            stream.write(content);
+            stream.write(trailer.getBytes(StandardCharsets.US_ASCII));
+            if (sync) {
+                stream.getFD().sync();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи в файл: " + tempFile);
+        }
+    }
+
+    static void replace(File tempFile, File file) {
+        try {
+            keepBackup(file);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка замены файла данных: " + file);
+        }
+    }
+
+    private static void keepBackup(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) return;
+
+        File backupFile = backupFileOf(file);
+        Files.deleteIfExists(backupFile.toPath());
+        try {
+            Files.createLink(backupFile.toPath(), file.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /*
+     * Содержимое файла без метки и концевика. Если сумма не сходится или у файла с меткой нет
+     * концевика, бросает ManagerLoadException.
+     */
+    static Content content(File file) {
+        try (RandomAccessFile access = new RandomAccessFile(file, "r")) {
+            long length = access.length();
+            long offset = hasMarker(access) ? MARKER.length : 0;
+            String text = null;
+            if (length - offset >= TRAILER_LENGTH) {
+                byte[] trailer = new byte[TRAILER_LENGTH];
+                access.seek(length - TRAILER_LENGTH);
+                access.readFully(trailer);
+                text = new String(trailer, StandardCharsets.US_ASCII);
+            }
+            if (text == null || !text.startsWith(TRAILER_PREFIX) || !text.endsWith("\n")) {
+                if (offset > 0) {
+                    throw new ManagerLoadException("Файл обрезан, нет концевика: " + file);
+                }
+                return new Content(0, length);
+            }
+
+            long expected = Long.parseLong(text.substring(TRAILER_PREFIX.length(), TRAILER_LENGTH - 1), 16);
+            long checkedLength = length - TRAILER_LENGTH;
+            if (checksum(file, checkedLength) != expected) {
+                throw new ManagerLoadException("Неверная контрольная сумма файла: " + file);
+            }
+            return new Content(offset, checkedLength - offset);
+        } catch (NumberFormatException e) {
+            throw new ManagerLoadException("Повреждён концевик файла: " + file);
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
+        }
+    }
+
+    /*
+     * Смещение содержимого: длина метки или 0 для файла без неё. Сумма не проверяется.
+     */
+    static int contentOffset(File file) {
+        try (RandomAccessFile access = new RandomAccessFile(file, "r")) {
+            return hasMarker(access) ? MARKER.length : 0;
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
+        }
+    }
+
+    private static boolean hasMarker(RandomAccessFile access) throws IOException {
+        if (access.length() < MARKER.length) return false;
+
+        byte[] head = new byte[MARKER.length];
+        access.seek(0);
+        access.readFully(head);
+        return Arrays.equals(head, MARKER);
+    }
+
+    static boolean isIntact(File file) {
+        try {
+            content(file);
+            return true;
+        } catch (ManagerLoadException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Возвращает последнюю целую копию на место повреждённого файла. false - копии нет или она
+     * тоже повреждена.
+     */
+    static boolean restoreBackup(File file) {
+        File backupFile = backupFileOf(file);
+        if (!backupFile.exists() || !isIntact(backupFile)) return false;
+
+        File tempFile = tempFileOf(file);
+        try {
+            Files.copy(backupFile.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка восстановления из резервной копии: " + backupFile);
+        }
+        return true;
+    }
+
+    private static long checksum(File file, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream stream = Files.newInputStream(file.toPath())) {
+            long remaining = length;
+            while (remaining > 0) {
+                int read = stream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) break;
+                crc.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        return crc.getValue();
+    }
+
+    record Content(long offset, long length) {
+    }
+}
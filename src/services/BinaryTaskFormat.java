@@ -0,0 +1,373 @@
+package services;
+
+import exceptions.ManagerLoadException;
+import tasks.Epic;
+import tasks.Status;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+ * Двоичный формат файла данных. Заголовок: MAGIC (4 байта) и VERSION (1 байт). Дальше записи:
+ * тег (1 байт), длина тела (varint), тело, CRC32 тега и тела (4 байта).
+ * Тело задачи: id (varint), флаги (1 - есть время начала, 2 - есть длительность, 4 - нет названия,
+ * 8 - нет описания, 16 - нет статуса), статус (номер, 0 при флаге 16), название и описание, которые
+ * есть (длина varint + UTF-8), затем время начала в минутах от эпохи и длительность
+ * в минутах (zigzag varint), у подзадачи в конце id эпика. Тело истории: количество и id (varint).
+ * Записи с неизвестным тегом пропускаются, чтобы старая версия могла читать файлы с новыми записями.
+ */
+final class BinaryTaskFormat {
+    static final int MAGIC = 0x544B4442;
+    static final int VERSION = 1;
+    private static final byte EPIC_TAG = 'E';
+    private static final byte SUBTASK_TAG = 'S';
+    private static final byte TASK_TAG = 'T';
+    private static final byte HISTORY_TAG = 'H';
+    private static final int HAS_START_TIME = 1;
+    private static final int HAS_DURATION = 2;
+    private static final int NO_NAME = 4;
+    private static final int NO_DESCRIPTION = 8;
+    private static final int NO_STATUS = 16;
+    private static final Status[] STATUSES = Status.values();
+
+    private BinaryTaskFormat() {
+    }
+
+    static boolean isBinary(File file) {
+        try (DataInputStream stream = new DataInputStream(new FileInputStream(file))) {
+            stream.skipNBytes(AtomicDataFile.contentOffset(file));
+            return stream.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
+        }
+    }
+
+    static byte[] encode(List<? extends Task> tasks, List<Integer> history) {
+        Output out = new Output(16 + tasks.size() * 48);
+        Output body = new Output(128);
+        CRC32 crc = new CRC32();
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        for (Task task : tasks) {
+            body.reset();
+            out.writeRecord(writeTask(body, task), body, crc);
+        }
+        if (!history.isEmpty()) {
+            body.reset();
+            body.writeVarLong(history.size());
+            for (int id : history) {
+                body.writeVarLong(id);
+            }
+            out.writeRecord(HISTORY_TAG, body, crc);
+        }
+        return out.toByteArray();
+    }
+
+    /*
+     * Отдаёт задачи в sink в порядке записи и возвращает историю. Читаются contentLength байт
+     * с contentOffset.
+     */
+    static List<Integer> decode(File file, long contentOffset, long contentLength, Consumer<Task> sink) {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
+        }
+        Input in = new Input(data, (int) contentOffset, (int) Math.min(contentOffset + contentLength, data.length));
+        int recordStart = (int) contentOffset;
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("нет заголовка");
+            }
+            int version = in.readByte();
+            if (version != VERSION) {
+                throw new ManagerLoadException("Неподдерживаемая версия файла '" + file + "': " + version);
+            }
+            List<Integer> history = new ArrayList<>();
+            CRC32 crc = new CRC32();
+            while (in.hasRemaining()) {
+                recordStart = in.position;
+                byte tag = (byte) in.readByte();
+                int length = in.readLength();
+                Input body = in.slice(length);
+                int checksum = in.readInt();
+                crc.reset();
+                crc.update(tag);
+                crc.update(data, body.position, length);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IllegalArgumentException("неверная контрольная сумма");
+                }
+                switch (tag) {
+                    case EPIC_TAG -> sink.accept(readEpic(body));
+                    case SUBTASK_TAG -> sink.accept(readSubtask(body));
+                    case TASK_TAG -> sink.accept(readTask(body));
+                    case HISTORY_TAG -> {
+                        history.clear();
+                        int size = body.readLength();
+                        for (int i = 0; i < size; i++) {
+                            history.add(body.readLength());
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return history;
+        } catch (ManagerLoadException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ManagerLoadException("Повреждённый файл данных '" + file + "' (смещение " + recordStart
+                    + "): " + e.getMessage());
+        }
+    }
+
+    /*
+     * Одна задача без заголовка файла и контрольной суммы: тег и тело. Используется страничным файлом,
+     * который проверяет целостность сам.
+     */
+    static byte[] encodeTask(Task task) {
+        Output body = new Output(64);
+        body.writeByte(0);
+        body.buffer[0] = writeTask(body, task);
+        return body.toByteArray();
+    }
+
+    static Task decodeTask(byte[] data, int offset, int length) {
+        Input in = new Input(data, offset, offset + length);
+        return switch ((byte) in.readByte()) {
+            case EPIC_TAG -> readEpic(in);
+            case SUBTASK_TAG -> readSubtask(in);
+            case TASK_TAG -> readTask(in);
+            default -> throw new IllegalArgumentException("неизвестный тип записи");
+        };
+    }
+
+    private static byte writeTask(Output body, Task task) {
+        body.writeVarLong(task.getId());
+        if (task instanceof Epic) {
+            writeCommonFields(body, task, 0);
+            return EPIC_TAG;
+        }
+        LocalDateTime startTime = task.getStartTime();
+        Duration duration = task.getDuration();
+        writeCommonFields(body, task,
+                (startTime != null ? HAS_START_TIME : 0) | (duration != null ? HAS_DURATION : 0));
+        if (startTime != null) {
+            body.writeSignedVarLong(Math.floorDiv(startTime.toEpochSecond(ZoneOffset.UTC), 60));
+        }
+        if (duration != null) {
+            body.writeSignedVarLong(duration.toMinutes());
+        }
+        if (task instanceof Subtask subtask) {
+            body.writeVarLong(subtask.getEpicId());
+            return SUBTASK_TAG;
+        }
+        return TASK_TAG;
+    }
+
+    /*
+     * Флаги, статус, название и описание. Поля, которых нет (null), отмечаются флагом и не пишутся.
+     */
+    private static void writeCommonFields(Output body, Task task, int flags) {
+        Status status = task.getStatus();
+        String name = task.getName();
+        String description = task.getDescription();
+        body.writeByte(flags | (name == null ? NO_NAME : 0) | (description == null ? NO_DESCRIPTION : 0)
+                | (status == null ? NO_STATUS : 0));
+        body.writeByte(status != null ? status.ordinal() : 0);
+        if (name != null) {
+            body.writeString(name);
+        }
+        if (description != null) {
+            body.writeString(description);
+        }
+    }
+
+    private static Epic readEpic(Input body) {
+        int id = body.readLength();
+        int flags = body.readByte();
+        body.readByte();
+        String name = (flags & NO_NAME) == 0 ? body.readString() : null;
+        String description = (flags & NO_DESCRIPTION) == 0 ? body.readString() : null;
+        return new Epic(id, name, description);
+    }
+
+    private static Task readTask(Input body) {
+        int id = body.readLength();
+        int flags = body.readByte();
+        int statusIndex = body.readByte();
+        Status status = (flags & NO_STATUS) == 0 ? STATUSES[statusIndex] : null;
+        String name = (flags & NO_NAME) == 0 ? body.readString() : null;
+        String description = (flags & NO_DESCRIPTION) == 0 ? body.readString() : null;
+        LocalDateTime startTime = (flags & HAS_START_TIME) != 0
+                ? LocalDateTime.ofEpochSecond(body.readSignedVarLong() * 60, 0, ZoneOffset.UTC) : null;
+        Duration duration = (flags & HAS_DURATION) != 0 ? Duration.ofMinutes(body.readSignedVarLong()) : null;
+        return new Task(id, name, description, status, startTime, duration);
+    }
+
+    private static Subtask readSubtask(Input body) {
+        Task task = readTask(body);
+        return new Subtask(task.getId(), task.getName(), task.getDescription(), task.getStatus(),
+                task.getStartTime(), task.getDuration(), body.readLength());
+    }
+
+    private static final class Output {
+        private byte[] buffer;
+        private int size;
+
+        Output(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeRecord(byte tag, Output body, CRC32 crc) {
+            writeByte(tag);
+            writeVarLong(body.size);
+            ensureCapacity(body.size);
+            System.arraycopy(body.buffer, 0, buffer, size, body.size);
+            size += body.size;
+            crc.reset();
+            crc.update(tag);
+            crc.update(body.buffer, 0, body.size);
+            writeInt((int) crc.getValue());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Input {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+
+        Input(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        boolean hasRemaining() {
+            return position < limit;
+        }
+
+        int readByte() {
+            require(1);
+            return data[position++] & 0xFF;
+        }
+
+        int readInt() {
+            require(4);
+            int value = (data[position] & 0xFF) << 24 | (data[position + 1] & 0xFF) << 16
+                    | (data[position + 2] & 0xFF) << 8 | (data[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("слишком длинное число");
+        }
+
+        long readSignedVarLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readLength() {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("значение вне диапазона: " + value);
+            }
+            return (int) value;
+        }
+
+        String readString() {
+            int length = readLength();
+            require(length);
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        Input slice(int length) {
+            require(length);
+            Input slice = new Input(data, position, position + length);
+            position += length;
+            return slice;
+        }
+
+        private void require(int length) {
+            if (length > limit - position) {
+                throw new IllegalArgumentException("запись обрезана");
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package services;
+
+/*
+ * Сжатие журнала запускается, когда журнал не меньше minJournalBytes и не меньше
+ * journalToBaseRatio от размера файла данных.
+ */
+public record CompactionPolicy(long minJournalBytes, double journalToBaseRatio) {
+    public static final CompactionPolicy DEFAULT = new CompactionPolicy(1024 * 1024, 1.0);
+    public static final CompactionPolicy DISABLED = new CompactionPolicy(Long.MAX_VALUE, Double.POSITIVE_INFINITY);
+
+    public CompactionPolicy {
+        if (minJournalBytes < 0 || journalToBaseRatio < 0) {
+            throw new IllegalArgumentException("Пороги сжатия не могут быть отрицательными.");
+        }
+    }
+
+    boolean shouldCompact(long journalBytes, long baseBytes) {
+        return journalBytes >= minJournalBytes && journalBytes >= journalToBaseRatio * baseBytes;
+    }
+}
@@ -0,0 +1,22 @@
+package services;
+
+import java.time.Duration;
+
+public record CompactionStats(long compactions,
+                              long failures,
+                              Duration lastDuration,
+                              Duration totalDuration,
+                              long lastBytesReclaimed,
+                              long totalBytesReclaimed) {
+    static final CompactionStats EMPTY = new CompactionStats(0, 0, Duration.ZERO, Duration.ZERO, 0, 0);
+
+    CompactionStats withCompaction(Duration duration, long bytesReclaimed) {
+        return new CompactionStats(compactions + 1, failures, duration, totalDuration.plus(duration),
+                bytesReclaimed, totalBytesReclaimed + bytesReclaimed);
+    }
+
+    CompactionStats withFailure() {
+        return new CompactionStats(compactions, failures + 1, lastDuration, totalDuration,
+                lastBytesReclaimed, totalBytesReclaimed);
+    }
+}
@@ -0,0 +1,182 @@
+package services;
+
+import tasks.AtomicIdGenerator;
+import tasks.Epic;
+import tasks.IdGenerator;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/*
+ * Чтение идёт напрямую из конкурентных коллекций без блокировок. Эпик, который меняется на месте,
+ * публикует состав подзадач неизменяемыми снимками, а агрегаты - через volatile-поля.
+ * Порядок захвата блокировок при записи: structureLock -> полосы по id (по возрастанию) -> scheduleLock.
+ * Все операции с подзадачами берут полосу своего эпика, поэтому эпик и его агрегаты
+ * изменяются только под ней. scheduleLock делает проверку пересечений и поиск свободного окна
+ * атомарными со вставкой.
+ */
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+    private static final int LOCK_STRIPES = 64;
+    private final ReentrantReadWriteLock structureLock;
+    private final ReentrantLock scheduleLock;
+    private final ReentrantLock[] stripes;
+
+    ConcurrentTaskManager(HistoryManager historyManager) {
+        this(historyManager, new AtomicIdGenerator());
+    }
+
+    ConcurrentTaskManager(HistoryManager historyManager, IdGenerator idGenerator) {
+        super(new SynchronizedHistoryManager(historyManager), idGenerator, 0, true);
+        structureLock = new ReentrantReadWriteLock();
+        scheduleLock = new ReentrantLock();
+        stripes = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    private static boolean isScheduled(Task task) {
+        return task != null && task.getStartTime() != null;
+    }
+
+    private <T> T write(BooleanSupplier scheduled, Supplier<T> action, int... ids) {
+        Lock structure = structureLock.readLock();
+        structure.lock();
+        int[] stripeIndexes = Arrays.stream(ids).map(id -> Math.floorMod(id, LOCK_STRIPES))
+                .distinct().sorted().toArray();
+        for (int index : stripeIndexes) {
+            stripes[index].lock();
+        }
+        try {
+            if (!scheduled.getAsBoolean()) {
+                return action.get();
+            }
+            scheduleLock.lock();
+            try {
+                return action.get();
+            } finally {
+                scheduleLock.unlock();
+            }
+        } finally {
+            for (int i = stripeIndexes.length - 1; i >= 0; i--) {
+                stripes[stripeIndexes[i]].unlock();
+            }
+            structure.unlock();
+        }
+    }
+
+    private void write(BooleanSupplier scheduled, Runnable action, int... ids) {
+        write(scheduled, () -> {
+            action.run();
+            return null;
+        }, ids);
+    }
+
+    private void writeExclusive(Runnable action) {
+        Lock structure = structureLock.writeLock();
+        structure.lock();
+        try {
+            action.run();
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    @Override
+    public int addEpic(Epic epic) {
+        return write(() -> false, () -> super.addEpic(epic), epic.getId());
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        write(() -> false, () -> super.updateEpic(epic), epic.getId());
+    }
+
+    @Override
+    public void removeEpic(int id) {
+        write(() -> true, () -> super.removeEpic(id), id);
+    }
+
+    @Override
+    public void clearEpics() {
+        writeExclusive(super::clearEpics);
+    }
+
+    @Override
+    public int addSubtask(Subtask subtask) {
+        return write(() -> isScheduled(subtask), () -> super.addSubtask(subtask),
+                subtask.getEpicId(), subtask.getId());
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        Subtask storedSubtask = findSubtask(subtask.getId());
+        if (storedSubtask == null) return;
+
+        write(() -> isScheduled(subtask) || isScheduled(findSubtask(subtask.getId())),
+                () -> super.updateSubtask(subtask), storedSubtask.getEpicId());
+    }
+
+    @Override
+    public void removeSubtask(int id) {
+        Subtask storedSubtask = findSubtask(id);
+        if (storedSubtask == null) return;
+
+        write(() -> isScheduled(findSubtask(id)), () -> super.removeSubtask(id), storedSubtask.getEpicId());
+    }
+
+    @Override
+    public void clearEpicSubtasks(int id) {
+        write(() -> true, () -> super.clearEpicSubtasks(id), id);
+    }
+
+    @Override
+    public void clearSubtasks() {
+        writeExclusive(super::clearSubtasks);
+    }
+
+    @Override
+    public int addTask(Task task) {
+        return write(() -> isScheduled(task), () -> super.addTask(task), task.getId());
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        write(() -> isScheduled(task) || isScheduled(findTask(task.getId())),
+                () -> super.updateTask(task), task.getId());
+    }
+
+    @Override
+    public void removeTask(int id) {
+        write(() -> isScheduled(findTask(id)), () -> super.removeTask(id), id);
+    }
+
+    @Override
+    public int scheduleEarliest(Task task, LocalDateTime notBefore) {
+        int[] ids = task instanceof Subtask subtask ? new int[]{subtask.getEpicId(), subtask.getId()}
+                : new int[]{task.getId()};
+        return write(() -> true, () -> super.scheduleEarliest(task, notBefore), ids);
+    }
+
+    @Override
+    public void clearTasks() {
+        writeExclusive(super::clearTasks);
+    }
+
+    @Override
+    public void clearAllData() {
+        writeExclusive(super::clearAllData);
+    }
+
+    @Override
+    public void reloadPrioritizedTasks() {
+        writeExclusive(super::reloadPrioritizedTasks);
+    }
+}
@@ -0,0 +1,73 @@
+package services;
+
+import exceptions.ManagerLoadException;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Хранилище в одном CSV-файле: каждая транзакция переписывает файл целиком через AtomicDataFile,
+ * так что после сбоя на диске остаётся либо старая, либо новая версия. История - в файле <file>.history.
+ */
+public class CsvTaskStore implements TaskStore {
+    private final File file;
+    private final HistoryFile historyFile;
+    private final Map<Integer, Task> tasks = new TreeMap<>();
+
+    public CsvTaskStore(File file) {
+        this.file = file;
+        this.historyFile = new HistoryFile(file, FileBackedTaskManager.DATA_FILE_CHARSET);
+    }
+
+    @Override
+    public synchronized List<Integer> load(Consumer<Task> sink) {
+        List<Integer> history = List.of();
+        if (file.exists() && file.length() > 0) {
+            if (!AtomicDataFile.isIntact(file) && !AtomicDataFile.restoreBackup(file)) {
+                throw new ManagerLoadException("Файл данных '" + file + "' повреждён, целой копии нет.");
+            }
+            history = FileBackedTaskManager.readDataFile(file, task -> tasks.put(task.getId(), task));
+        }
+        tasks.values().forEach(sink);
+        return historyFile.exists() ? historyFile.read() : history;
+    }
+
+    @Override
+    public synchronized Task find(int id) {
+        return tasks.get(id);
+    }
+
+    @Override
+    public synchronized void commit(Transaction transaction) {
+        if (transaction.isEmpty()) return;
+
+        transaction.getPuts().forEach(task -> tasks.put(task.getId(), task));
+        transaction.getDeletes().forEach(tasks::remove);
+        List<Task> ordered = new ArrayList<>(tasks.size());
+        tasks.values().stream().filter(task -> task instanceof Epic).forEach(ordered::add);
+        tasks.values().stream().filter(task -> task instanceof Subtask).forEach(ordered::add);
+        tasks.values().stream().filter(task -> !(task instanceof Epic || task instanceof Subtask))
+                .forEach(ordered::add);
+        AtomicDataFile.write(file, FileBackedTaskManager.renderDataFile(DataFormat.CSV, ordered, List.of()), true);
+    }
+
+    @Override
+    public synchronized void recordView(int id, Supplier<List<Integer>> history) {
+        if (historyFile.append(id)) {
+            historyFile.rewrite(history.get());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        historyFile.close();
+    }
+}
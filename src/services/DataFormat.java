@@ -0,0 +1,6 @@
+package services;
+
+public enum DataFormat {
+    CSV,
+    BINARY
+}
@@ -0,0 +1,7 @@
+package services;
+
+public enum DurabilityPolicy {
+    NONE,
+    INTERVAL,
+    FSYNC_EACH_BATCH
+}
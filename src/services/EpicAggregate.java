@@ -0,0 +1,98 @@
+package services;
+
+import tasks.Epic;
+import tasks.Status;
+import tasks.Subtask;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+class EpicAggregate {
+    private final int[] statusCounts;
+    private final NavigableMap<LocalDateTime, Integer> startTimes;
+    private final NavigableMap<LocalDateTime, Integer> endTimes;
+    private final Map<Integer, Contribution> contributions;
+    private Duration duration;
+
+    EpicAggregate() {
+        statusCounts = new int[Status.values().length];
+        startTimes = new TreeMap<>();
+        endTimes = new TreeMap<>();
+        contributions = new HashMap<>();
+        duration = Duration.ZERO;
+    }
+
+    void add(Subtask subtask) {
+        remove(subtask.getId());
+
+        Status status = subtask.getStatus() != null ? subtask.getStatus() : Status.NEW;
+        Contribution contribution = new Contribution(status, subtask.getStartTime(),
+                subtask.getEndTime(), subtask.getDuration());
+        contributions.put(subtask.getId(), contribution);
+        statusCounts[contribution.status().ordinal()]++;
+        if (contribution.isScheduled()) {
+            startTimes.merge(contribution.startTime(), 1, Integer::sum);
+            endTimes.merge(contribution.endTime(), 1, Integer::sum);
+            duration = duration.plus(contribution.duration());
+        }
+    }
+
+    void remove(int subtaskId) {
+        Contribution contribution = contributions.remove(subtaskId);
+        if (contribution == null) return;
+
+        statusCounts[contribution.status().ordinal()]--;
+        if (contribution.isScheduled()) {
+            decrement(startTimes, contribution.startTime());
+            decrement(endTimes, contribution.endTime());
+            duration = duration.minus(contribution.duration());
+        }
+    }
+
+    void clear() {
+        contributions.clear();
+        startTimes.clear();
+        endTimes.clear();
+        duration = Duration.ZERO;
+        Arrays.fill(statusCounts, 0);
+    }
+
+    void applyTo(Epic epic) {
+        epic.setStatus(getStatus());
+        if (startTimes.isEmpty()) {
+            epic.setStartTime(null);
+            epic.setEndTime(null);
+            epic.setDuration(null);
+        } else {
+            epic.setStartTime(startTimes.firstKey());
+            epic.setEndTime(endTimes.lastKey());
+            epic.setDuration(duration);
+        }
+    }
+
+    private Status getStatus() {
+        int total = contributions.size();
+        if (total == statusCounts[Status.NEW.ordinal()]) {
+            return Status.NEW;
+        } else if (total == statusCounts[Status.DONE.ordinal()]) {
+            return Status.DONE;
+        }
+        return Status.IN_PROGRESS;
+    }
+
+    private static void decrement(NavigableMap<LocalDateTime, Integer> counts, LocalDateTime key) {
+        counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private record Contribution(Status status, LocalDateTime startTime, LocalDateTime endTime,
+                                Duration duration) {
+        boolean isScheduled() {
+            return startTime != null && endTime != null;
+        }
+    }
+}
@@ -3,7 +3,9 @@ package services;
 import exceptions.ManagerFileCreateException;
 import exceptions.ManagerLoadException;
 import exceptions.ManagerSaveException;
+import tasks.AtomicIdGenerator;
 import tasks.Epic;
+import tasks.IdGenerator;
 import tasks.Subtask;
 import tasks.Task;
 import tasks.Type;
@@ -14,28 +16,78 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static java.lang.System.getProperty;
 import static java.lang.System.out;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
     private static final String[] DATA_FILE_HEADERS = new String[]{"type", "id", "name", "description", "status",
             "start_time", "duration", "epic"};
-    private static final Charset DATA_FILE_CHARSET = StandardCharsets.UTF_8;
+    static final Charset DATA_FILE_CHARSET = StandardCharsets.UTF_8;
     private static final String DATA_FILE_DELIMITER = ",";
+    private static final String CLEAR_ALL = "ALL";
+    private static final int MANY_CHANGED = -1;
+    private static final String TRAILER_LINE_PREFIX = "#";
     private final File dataFile;
+    private final StorageMode storageMode;
+    private final DataFormat dataFormat;
+    private final TaskJournal journal;
+    private final HistoryFile historyFile;
+    private final DurabilityPolicy durabilityPolicy;
+    private final WriteBehindPersister<PendingWrite> persister;
+    private final SnapshotCompactor compactor;
+    private volatile boolean compactionRequested;
+    private List<RestoreConflict> loadConflicts = List.of();
+    private PagedTaskFile pagedFile;
+    private int nesting;
 
     FileBackedTaskManager(HistoryManager historyManager, File dataFile) {
-        super(historyManager);
+        this(historyManager, new AtomicIdGenerator(), dataFile);
+    }
+
+    FileBackedTaskManager(HistoryManager historyManager, IdGenerator idGenerator, File dataFile) {
+        this(historyManager, idGenerator, dataFile, StorageMode.SNAPSHOT);
+    }
+
+    FileBackedTaskManager(HistoryManager historyManager, IdGenerator idGenerator, File dataFile,
+                          StorageMode storageMode) {
+        this(historyManager, idGenerator, dataFile, storageMode, null);
+    }
+
+    FileBackedTaskManager(HistoryManager historyManager, IdGenerator idGenerator, File dataFile,
+                          StorageMode storageMode, DurabilityPolicy durabilityPolicy) {
+        this(historyManager, idGenerator, dataFile, storageMode, durabilityPolicy, DataFormat.CSV);
+    }
+
+    /*
+     * durabilityPolicy != null включает отложенную запись: изменения уходят в очередь потока записи,
+     * а вызывающий поток не ждёт файлового ввода-вывода. dataFormat задаёт формат, в котором пишется
+     * файл данных; читается файл в том формате, в котором записан.
+     */
+    FileBackedTaskManager(HistoryManager historyManager, IdGenerator idGenerator, File dataFile,
+                          StorageMode storageMode, DurabilityPolicy durabilityPolicy, DataFormat dataFormat) {
+        super(historyManager, idGenerator);
         this.dataFile = dataFile;
+        this.storageMode = storageMode;
+        this.dataFormat = dataFormat;
+        this.durabilityPolicy = durabilityPolicy;
+        this.journal = new TaskJournal(dataFile, DATA_FILE_CHARSET, DATA_FILE_DELIMITER);
+        this.historyFile = new HistoryFile(dataFile, DATA_FILE_CHARSET);
+        this.compactor = new SnapshotCompactor(dataFile, journal);
         if (Files.exists(dataFile.toPath())) {
-            fillDataFromFile();
+            load();
         } else {
             createDataFile();
         }
+        this.persister = durabilityPolicy == null ? null : new WriteBehindPersister<>(
+                "file-backed-persister-" + dataFile.getName(), this::writeBatch, this::sync, durabilityPolicy,
+                WriteBehindPersister.DEFAULT_SYNC_INTERVAL_MILLIS);
     }
 
     public static void main(String[] args) {
@@ -50,18 +102,93 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     public static FileBackedTaskManager loadFromFile(File file) {
+        return loadFromFile(file, new AtomicIdGenerator());
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, IdGenerator idGenerator) {
+        return loadFromFile(file, idGenerator, StorageMode.SNAPSHOT);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, StorageMode storageMode) {
+        return loadFromFile(file, new AtomicIdGenerator(), storageMode);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, IdGenerator idGenerator, StorageMode storageMode) {
+        return loadFromFile(file, idGenerator, storageMode, null);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, StorageMode storageMode,
+                                                     DurabilityPolicy durabilityPolicy) {
+        return loadFromFile(file, new AtomicIdGenerator(), storageMode, durabilityPolicy);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, IdGenerator idGenerator, StorageMode storageMode,
+                                                     DurabilityPolicy durabilityPolicy) {
+        return loadFromFile(file, idGenerator, storageMode, durabilityPolicy, DataFormat.CSV);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, StorageMode storageMode, DataFormat dataFormat) {
+        return loadFromFile(file, new AtomicIdGenerator(), storageMode, null, dataFormat);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, IdGenerator idGenerator, StorageMode storageMode,
+                                                     DurabilityPolicy durabilityPolicy, DataFormat dataFormat) {
         if (Files.exists(file.toPath())) {
-            return new FileBackedTaskManager(Managers.getDefaultHistoryManager(), file);
+            return new FileBackedTaskManager(Managers.getDefaultHistoryManager(), idGenerator, file, storageMode,
+                    durabilityPolicy, dataFormat);
         }
         throw new ManagerLoadException("Файл '" + file + "' отсутствует.");
     }
 
+    /*
+     * Переписывает файл данных source в target в формате targetFormat (например, CSV в двоичный).
+     * Журнал и файл истории source не учитываются - перед конвертацией менеджер нужно закрыть.
+     */
+    public static void convert(File source, File target, DataFormat targetFormat) {
+        if (!Files.exists(source.toPath())) {
+            throw new ManagerLoadException("Файл '" + source + "' отсутствует.");
+        }
+        List<Task> tasks = new ArrayList<>();
+        List<Integer> history = readDataFile(source, tasks::add);
+        AtomicDataFile.write(target, renderDataFile(targetFormat, tasks, history), true);
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public DataFormat getDataFormat() {
+        return dataFormat;
+    }
+
+    public DurabilityPolicy getDurabilityPolicy() {
+        return durabilityPolicy;
+    }
+
+    public void setCompactionPolicy(CompactionPolicy compactionPolicy) {
+        compactor.setPolicy(compactionPolicy);
+    }
+
+    public CompactionStats getCompactionStats() {
+        return compactor.getStats();
+    }
+
+    /*
+     * Строки файла данных, отброшенные при последней загрузке.
+     */
+    public List<RestoreConflict> getLoadConflicts() {
+        return loadConflicts;
+    }
+
     static String historyToString(HistoryManager manager) {
-        List<Task> tasks = manager.getHistory();
+        return historyToString(manager.getHistory().stream().map(Task::getId).toList());
+    }
+
+    private static String historyToString(List<Integer> ids) {
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < tasks.size(); i++) {
-            sb.append(tasks.get(i).getId());
-            if (i < tasks.size() - 1) {
+        for (int i = 0; i < ids.size(); i++) {
+            sb.append(ids.get(i));
+            if (i < ids.size() - 1) {
                 sb.append(DATA_FILE_DELIMITER);
             }
         }
@@ -77,7 +204,14 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         return res;
     }
 
+    /*
+     * В страничном режиме сразу создаётся пустой страничный файл: иначе первое изменение некуда записать.
+     */
     private void createDataFile() {
+        if (storageMode == StorageMode.PAGED) {
+            pagedFile = PagedTaskFile.create(dataFile, List.of());
+            return;
+        }
         try {
             Files.createFile(dataFile.toPath());
         } catch (IOException e) {
@@ -85,187 +219,510 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         }
     }
 
-    private void fillDataFromFile() {
-        try (FileReader reader = new FileReader(dataFile, DATA_FILE_CHARSET);
+    /*
+     * Загрузка: снимок массовым восстановлением (restore), затем журнал поверх него, затем история -
+     * из файла истории, а для старых файлов из строки истории снимка; id удалённых задач отбрасываются.
+     * Вложенные вызовы (nesting > 0) не сохраняются, поэтому журнал применяется обычными операциями.
+     * Непустой журнал после восстановления сворачивается в новый снимок.
+     */
+    private void load() {
+        nesting++;
+        try {
+            compactor.recover();
+            boolean journalHasData = journal.hasData();
+            List<Integer> savedHistory = fillDataFromFile();
+            List<TaskJournal.Record> records = journal.read();
+            for (TaskJournal.Record record : records) {
+                applyJournalRecord(record);
+            }
+            if (historyFile.exists()) {
+                savedHistory = historyFile.read();
+            }
+            for (int id : savedHistory) {
+                Task task = findAnyTask(id);
+                if (task != null) {
+                    historyManager.add(task);
+                }
+            }
+            if (journalHasData || storageMode == StorageMode.PAGED && pagedFile == null) {
+                compact();
+            }
+            historyFile.rewrite(getHistoryIds());
+        } finally {
+            nesting--;
+        }
+    }
+
+    /*
+     * Повреждённый файл данных (не сошлась контрольная сумма или обрезан) заменяется последней целой
+     * копией .bak. Копия может быть старше журнала, поэтому замена попадает в getLoadConflicts.
+     */
+    private List<Integer> fillDataFromFile() {
+        boolean restoredFromBackup = false;
+        if (!AtomicDataFile.isIntact(dataFile)) {
+            if (!AtomicDataFile.restoreBackup(dataFile)) {
+                throw new ManagerLoadException("Файл данных '" + dataFile + "' повреждён, целой копии нет.");
+            }
+            restoredFromBackup = true;
+        }
+        List<Task> tasks = new ArrayList<>();
+        List<Integer> loadedHistory;
+        if (storageMode == StorageMode.PAGED && PagedTaskFile.isPaged(dataFile)) {
+            pagedFile = PagedTaskFile.open(dataFile, tasks::add);
+            loadedHistory = List.of();
+        } else {
+            loadedHistory = readDataFile(dataFile, tasks::add);
+        }
+        loadConflicts = restore(tasks);
+        if (restoredFromBackup) {
+            loadConflicts.addFirst(new RestoreConflict(-1, RestoreConflict.Reason.RESTORED_FROM_BACKUP, -1));
+        }
+        return loadedHistory;
+    }
+
+    /*
+     * Формат определяется по первым байтам файла, так что файл любого формата читается
+     * независимо от настроек менеджера. Большой CSV-файл разбирается параллельно.
+     * Метка и концевик с контрольной суммой проверяются до разбора и в данные не попадают.
+     */
+    static List<Integer> readDataFile(File file, Consumer<Task> sink) {
+        if (PagedTaskFile.isPaged(file)) {
+            PagedTaskFile.read(file, sink);
+            return List.of();
+        }
+        AtomicDataFile.Content content = AtomicDataFile.content(file);
+        if (BinaryTaskFormat.isBinary(file)) {
+            return BinaryTaskFormat.decode(file, content.offset(), content.length(), sink);
+        }
+        if (ParallelCsvLoader.isWorthLoading(content.length())) {
+            return ParallelCsvLoader.load(file, content.offset(), content.length(), DATA_FILE_CHARSET,
+                    FileBackedTaskManager::taskFromString, FileBackedTaskManager::historyFromString, sink);
+        }
+        try (FileReader reader = new FileReader(file, DATA_FILE_CHARSET);
              BufferedReader br = new BufferedReader(reader)) {
-            String epicType = Type.EPIC.toString();
-            String subtaskType = Type.SUBTASK.toString();
-            String taskType = Type.TASK.toString();
-            Map<Integer, Task> loadedTasks = new HashMap<>();
             List<Integer> loadedHistory = new ArrayList<>();
+            br.skip(content.offset());
 
             int i = 0;
-            while (br.ready()) {
-                StringBuilder sb = new StringBuilder(br.readLine());
-                if (i > 0 && !sb.isEmpty()) {
-                    int firstDelimiterIndex = sb.indexOf(DATA_FILE_DELIMITER);
-                    String startWorld = firstDelimiterIndex > -1 ? sb.substring(0, firstDelimiterIndex) : null;
-                    String taskData = sb.substring(firstDelimiterIndex + 1);
-
-                    if (epicType.equals(startWorld)) {
-                        Epic epic = Epic.createFromString(taskData, DATA_FILE_DELIMITER);
-                        super.addEpic(epic);
-                        loadedTasks.put(epic.getId(), epic);
-                    } else if (subtaskType.equals(startWorld)) {
-                        Subtask subtask = Subtask.createFromString(taskData, DATA_FILE_DELIMITER);
-                        super.addSubtask(subtask);
-                        loadedTasks.put(subtask.getId(), subtask);
-                    } else if (taskType.equals(startWorld)) {
-                        Task task = Task.createFromString(taskData, DATA_FILE_DELIMITER);
-                        super.addTask(task);
-                        loadedTasks.put(task.getId(), task);
+            String line;
+            while ((line = br.readLine()) != null && !line.startsWith(TRAILER_LINE_PREFIX)) {
+                if (i > 0 && !line.isEmpty()) {
+                    Task task = taskFromString(line);
+                    if (task != null) {
+                        sink.accept(task);
                     } else {
-                        loadedHistory.addAll(historyFromString(sb.toString()));
+                        loadedHistory.addAll(historyFromString(line));
                     }
                 }
                 i++;
             }
-            for (Integer id : loadedHistory) {
-                historyManager.add(loadedTasks.get(id));
-            }
+            return loadedHistory;
         } catch (IOException e) {
-            throw new ManagerLoadException("Ошибка чтения файла: " + dataFile);
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
         }
     }
 
-    private void save() {
-        saveFileHeader();
-        saveData();
+    private List<Integer> getHistoryIds() {
+        return historyManager.getHistory().stream().map(Task::getId).toList();
     }
 
-    private void saveFileHeader() {
-        try (Writer fileWriter = new FileWriter(dataFile, DATA_FILE_CHARSET)) {
-            fileWriter.write(String.join(DATA_FILE_DELIMITER, DATA_FILE_HEADERS));
-        } catch (IOException e) {
-            throw new ManagerFileCreateException("Ошибка записи в файл: " + dataFile);
+    private static Task taskFromString(String value) {
+        int firstDelimiterIndex = value.indexOf(DATA_FILE_DELIMITER);
+        if (firstDelimiterIndex < 0) return null;
+
+        String type = value.substring(0, firstDelimiterIndex);
+        String taskData = value.substring(firstDelimiterIndex + 1);
+        if (Type.EPIC.toString().equals(type)) {
+            return Epic.createFromString(taskData, DATA_FILE_DELIMITER);
+        } else if (Type.SUBTASK.toString().equals(type)) {
+            return Subtask.createFromString(taskData, DATA_FILE_DELIMITER);
+        } else if (Type.TASK.toString().equals(type)) {
+            return Task.createFromString(taskData, DATA_FILE_DELIMITER);
         }
+        return null;
     }
 
-    private void saveData() {
-        try (Writer fileWriter = new FileWriter(dataFile, DATA_FILE_CHARSET, true)) {
-            for (Task epic : getEpics().values()) {
-                fileWriter.write("\n" + epic.toSaveString(DATA_FILE_DELIMITER));
-            }
+    private void addLoadedTask(Task task) {
+        if (task instanceof Epic epic) {
+            addEpic(epic);
+        } else if (task instanceof Subtask subtask) {
+            addSubtask(subtask);
+        } else {
+            addTask(task);
+        }
+    }
 
-            for (Task subtask : getSubtasks().values()) {
-                fileWriter.write("\n" + subtask.toSaveString(DATA_FILE_DELIMITER));
+    private void applyJournalRecord(TaskJournal.Record record) {
+        String payload = record.payload();
+        try {
+            switch (record.operation()) {
+                case ADD -> addLoadedTask(taskFromString(payload));
+                case UPDATE -> {
+                    Task task = taskFromString(payload);
+                    if (task instanceof Epic epic) {
+                        updateEpic(epic);
+                    } else if (task instanceof Subtask subtask) {
+                        updateSubtask(subtask);
+                    } else {
+                        updateTask(task);
+                    }
+                }
+                case REMOVE -> {
+                    String[] parts = payload.split(DATA_FILE_DELIMITER);
+                    int id = Integer.parseInt(parts[1]);
+                    switch (Type.valueOf(parts[0])) {
+                        case EPIC -> removeEpic(id);
+                        case SUBTASK -> removeSubtask(id);
+                        case TASK -> removeTask(id);
+                    }
+                }
+                case CLEAR -> {
+                    if (CLEAR_ALL.equals(payload)) {
+                        clearAllData();
+                    } else {
+                        switch (Type.valueOf(payload)) {
+                            case EPIC -> clearEpics();
+                            case SUBTASK -> clearSubtasks();
+                            case TASK -> clearTasks();
+                        }
+                    }
+                }
+                case CLEAR_SUBTASKS -> clearEpicSubtasks(Integer.parseInt(payload));
             }
+        } catch (RuntimeException e) {
+            throw new ManagerLoadException("Повреждённая запись журнала '" + journal.getFile() + "': "
+                    + record.operation() + DATA_FILE_DELIMITER + payload);
+        }
+    }
 
-            for (Task task : getTasks().values()) {
-                fileWriter.write("\n" + task.toSaveString(DATA_FILE_DELIMITER));
+    /*
+     * Сворачивает журнал в новый файл данных и дожидается окончания. Автоматическое сжатие
+     * по порогам CompactionPolicy идёт так же, но в фоне, не задерживая изменения.
+     */
+    public void compact() {
+        if (persister != null && storageMode != StorageMode.PAGED) {
+            requestCompaction();
+            persister.flush();
+        } else {
+            synchronized (this) {
+                startCompaction();
             }
+        }
+        compactor.await();
+    }
 
-            fileWriter.write("\n" + historyToString(historyManager));
-        } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка записи в файл: " + dataFile);
+    private void startCompaction() {
+        if (storageMode == StorageMode.SNAPSHOT) {
+            save();
+            journal.truncate();
+            return;
+        }
+        if (storageMode == StorageMode.PAGED) {
+            rewritePages();
+            journal.truncate();
+            return;
         }
+        compactor.awaitIdle();
+        byte[] snapshot = renderSnapshot();
+        journal.rotate();
+        compactor.start(snapshot);
     }
 
-    @Override
-    public int addEpic(Epic epic) {
-        int id = super.addEpic(epic);
-        save();
-        return id;
+    private synchronized void requestCompaction() {
+        compactionRequested = true;
+        persister.submit(new PendingWrite(PendingWrite.Kind.COMPACT, null, renderSnapshot(), 0));
     }
 
-    @Override
-    public void updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
+    /*
+     * Дожидается записи всех изменений, сделанных до вызова. Без отложенной записи ничего не делает.
+     */
+    public void flush() {
+        if (persister != null) {
+            persister.flush();
+        }
     }
 
     @Override
-    public void removeEpic(int id) {
-        super.removeEpic(id);
-        save();
+    public void close() {
+        if (persister != null) {
+            persister.close();
+        }
+        compactor.close();
+        synchronized (this) {
+            journal.close();
+            historyFile.close();
+            if (pagedFile != null) {
+                pagedFile.close();
+            }
+        }
     }
 
-    @Override
-    public void clearEpics() {
-        super.clearEpics();
-        save();
+    WriteBehindPersister<?> getPersister() {
+        return persister;
     }
 
+    /*
+     * Все изменения и просмотры проходят здесь. Вложенные вызовы и применение журнала при загрузке
+     * (nesting > 0) не пишутся. Остановленная или упавшая отложенная запись отклоняет операцию до
+     * изменения в памяти. Изменение записывается, только если операция что-то поменяла (выросла версия
+     * менеджера): обновление и удаление отсутствующего id или очистка пустой коллекции в файл не попадают.
+     */
     @Override
-    public int addSubtask(Subtask subtask) {
-        int id = super.addSubtask(subtask);
-        save();
-        return id;
+    synchronized <T> T applyChange(TaskChange change, Supplier<T> action) {
+        if (nesting > 0) return action.get();
+        if (persister != null) {
+            persister.checkAccepting();
+        }
+        long version = getVersion();
+        T result;
+        nesting++;
+        try {
+            result = action.get();
+        } finally {
+            nesting--;
+        }
+        if (change.kind() == TaskChange.Kind.VIEW) {
+            recordView((Task) result);
+        } else if (getVersion() != version) {
+            writeChange(change);
+        }
+        return result;
     }
 
-    @Override
-    public void updateSubtask(Subtask subtask) {
-        super.updateSubtask(subtask);
-        save();
+    private void recordView(Task task) {
+        if (task == null) return;
+        if (persister != null) {
+            persister.submit(new PendingWrite(PendingWrite.Kind.VIEW, null, null, task.getId()));
+        } else if (historyFile.append(task.getId())) {
+            historyFile.rewrite(getHistoryIds());
+        }
     }
 
-    @Override
-    public void removeSubtask(int id) {
-        super.removeSubtask(id);
-        save();
+    /*
+     * changedId - id изменённой записи для страничного режима, MANY_CHANGED - изменено несколько записей
+     * (очистка, удаление эпика вместе с подзадачами).
+     */
+    private void writeChange(TaskChange change) {
+        TaskJournal.Operation operation;
+        String payload;
+        int changedId;
+        switch (change.kind()) {
+            case ADD, UPDATE -> {
+                operation = change.kind() == TaskChange.Kind.ADD ? TaskJournal.Operation.ADD
+                        : TaskJournal.Operation.UPDATE;
+                payload = change.task().toSaveString(DATA_FILE_DELIMITER);
+                changedId = change.id();
+            }
+            case REMOVE -> {
+                operation = TaskJournal.Operation.REMOVE;
+                payload = change.type() + DATA_FILE_DELIMITER + change.id();
+                changedId = change.type() == Type.EPIC ? MANY_CHANGED : change.id();
+            }
+            case CLEAR -> {
+                operation = TaskJournal.Operation.CLEAR;
+                payload = change.type() == null ? CLEAR_ALL : change.type().toString();
+                changedId = MANY_CHANGED;
+            }
+            case CLEAR_SUBTASKS -> {
+                operation = TaskJournal.Operation.CLEAR_SUBTASKS;
+                payload = String.valueOf(change.id());
+                changedId = MANY_CHANGED;
+            }
+            default -> throw new IllegalArgumentException("Операция не меняет данные: " + change.kind());
+        }
+        if (storageMode == StorageMode.PAGED) {
+            if (persister != null) {
+                persister.submit(new PendingWrite(PendingWrite.Kind.PAGE, null, null, changedId));
+            } else {
+                writePages(collectPageChanges(List.of(changedId)));
+                pagedFile.force();
+            }
+        } else if (storageMode == StorageMode.JOURNAL) {
+            if (persister != null) {
+                persister.submit(new PendingWrite(PendingWrite.Kind.JOURNAL,
+                        TaskJournal.format(operation, payload, DATA_FILE_DELIMITER), null, 0));
+            } else {
+                journal.append(operation, payload);
+                if (compactor.shouldCompact()) {
+                    startCompaction();
+                }
+            }
+        } else if (persister != null) {
+            persister.submit(new PendingWrite(PendingWrite.Kind.SNAPSHOT, null, null, 0));
+        } else {
+            save();
+        }
     }
 
-    @Override
-    public void clearEpicSubtasks(int id) {
-        super.clearEpicSubtasks(id);
-        save();
+    /*
+     * Выполняется на потоке записи. Подряд идущие изменения журнала пишутся одной записью,
+     * несколько запросов снимка схлопываются в один. Строки журнала перед COMPACT дописываются
+     * до ротации, чтобы не потеряться при сбое сжатия. Монитор менеджера берётся только на время
+     * сборки снимка или списка истории, ввод-вывод идёт без него.
+     */
+    private void writeBatch(List<PendingWrite> batch) {
+        List<String> journalLines = new ArrayList<>();
+        List<Integer> viewedIds = new ArrayList<>();
+        Set<Integer> changedIds = new LinkedHashSet<>();
+        boolean snapshotRequested = false;
+        for (PendingWrite write : batch) {
+            switch (write.kind()) {
+                case JOURNAL -> journalLines.add(write.line());
+                case SNAPSHOT -> snapshotRequested = true;
+                case VIEW -> viewedIds.add(write.id());
+                case PAGE -> changedIds.add(write.id());
+                case COMPACT -> {
+                    if (storageMode == StorageMode.SNAPSHOT) {
+                        snapshotRequested = false;
+                        writeSnapshot(write.snapshot(), durabilityPolicy != DurabilityPolicy.NONE);
+                    } else {
+                        if (!journalLines.isEmpty()) {
+                            journal.appendAll(journalLines);
+                            journalLines.clear();
+                        }
+                        compactor.awaitIdle();
+                        journal.rotate();
+                        compactor.start(write.snapshot());
+                    }
+                    compactionRequested = false;
+                }
+            }
+        }
+        if (!journalLines.isEmpty()) {
+            journal.appendAll(journalLines);
+            if (!compactionRequested && compactor.shouldCompact()) {
+                requestCompaction();
+            }
+        }
+        if (!changedIds.isEmpty()) {
+            List<PageChange> changes;
+            synchronized (this) {
+                changes = collectPageChanges(changedIds);
+            }
+            writePages(changes);
+        }
+        if (snapshotRequested) {
+            byte[] content;
+            synchronized (this) {
+                content = renderSnapshot();
+            }
+            writeSnapshot(content, durabilityPolicy != DurabilityPolicy.NONE);
+        }
+        if (!viewedIds.isEmpty() && historyFile.appendAll(viewedIds)) {
+            List<Integer> historyIds;
+            synchronized (this) {
+                historyIds = getHistoryIds();
+            }
+            historyFile.rewrite(historyIds);
+        }
     }
 
-    @Override
-    public void clearSubtasks() {
-        super.clearSubtasks();
-        save();
+    private void sync() {
+        journal.sync();
+        historyFile.sync();
+        if (pagedFile != null) {
+            pagedFile.force();
+        }
     }
 
-    @Override
-    public int addTask(Task task) {
-        int id = super.addTask(task);
-        save();
-        return id;
+    /*
+     * Под монитором менеджера: текущее состояние изменённых записей; записи, которых больше нет,
+     * становятся удалениями. При MANY_CHANGED сверяются все id страничного файла.
+     */
+    private List<PageChange> collectPageChanges(Collection<Integer> changedIds) {
+        List<PageChange> changes = new ArrayList<>(changedIds.size());
+        boolean manyChanged = false;
+        for (int id : changedIds) {
+            if (id == MANY_CHANGED) {
+                manyChanged = true;
+                continue;
+            }
+            Task task = findAnyTask(id);
+            changes.add(new PageChange(id, task != null ? BinaryTaskFormat.encodeTask(task) : null));
+        }
+        if (manyChanged) {
+            for (int id : pagedFile.getIds()) {
+                if (getTaskType(id) == null) {
+                    changes.add(new PageChange(id, null));
+                }
+            }
+        }
+        return changes;
     }
 
-    @Override
-    public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+    private void writePages(List<PageChange> changes) {
+        for (PageChange change : changes) {
+            if (change.record() != null) {
+                pagedFile.put(change.id(), change.record());
+            } else {
+                pagedFile.delete(change.id());
+            }
+        }
     }
 
-    @Override
-    public void removeTask(int id) {
-        super.removeTask(id);
-        save();
+    private void rewritePages() {
+        List<Task> tasks = getAllTasks();
+        if (pagedFile == null) {
+            pagedFile = PagedTaskFile.create(dataFile, tasks);
+        } else {
+            pagedFile.rewrite(tasks);
+        }
     }
 
-    @Override
-    public void clearTasks() {
-        super.clearTasks();
-        save();
+    PagedTaskFile getPagedFile() {
+        return pagedFile;
     }
 
-    @Override
-    public void clearAllData() {
-        super.clearAllData();
-        save();
+    private void save() {
+        writeSnapshot(renderSnapshot(), true);
     }
 
-    @Override
-    public Epic getEpic(int id) {
-        Epic epic = super.getEpic(id);
-        save();
-        return epic;
+    private byte[] renderSnapshot() {
+        return renderDataFile(dataFormat, getAllTasks(), getHistoryIds());
     }
 
-    @Override
-    public Subtask getSubtask(int id) {
-        Subtask subtask = super.getSubtask(id);
-        save();
-        return subtask;
+    private List<Task> getAllTasks() {
+        List<Task> tasks = new ArrayList<>(getEpicsView().size() + getSubtasksView().size() + getTasksView().size());
+        tasks.addAll(getEpicsView().values());
+        tasks.addAll(getSubtasksView().values());
+        tasks.addAll(getTasksView().values());
+        return tasks;
     }
 
-    @Override
-    public Task getTask(int id) {
-        Task task = super.getTask(id);
-        save();
-        return task;
+    /*
+     * tasks идут в порядке эпики, подзадачи, задачи - при загрузке эпик должен появиться раньше подзадач.
+     */
+    static byte[] renderDataFile(DataFormat format, List<Task> tasks, List<Integer> history) {
+        if (format == DataFormat.BINARY) {
+            return BinaryTaskFormat.encode(tasks, history);
+        }
+        StringBuilder sb = new StringBuilder(String.join(DATA_FILE_DELIMITER, DATA_FILE_HEADERS));
+        for (Task task : tasks) {
+            sb.append('\n').append(task.toSaveString(DATA_FILE_DELIMITER));
+        }
+
+        sb.append('\n').append(historyToString(history));
+        return sb.toString().getBytes(DATA_FILE_CHARSET);
+    }
+
+    private void writeSnapshot(byte[] content, boolean sync) {
+        AtomicDataFile.write(dataFile, content, sync);
+    }
+
+    /*
+     * line - строка журнала (JOURNAL), snapshot - готовый файл данных (COMPACT), id - просмотренная (VIEW)
+     * или изменённая в страничном режиме (PAGE) задача.
+     */
+    private record PendingWrite(Kind kind, String line, byte[] snapshot, int id) {
+        enum Kind {
+            JOURNAL,
+            SNAPSHOT,
+            VIEW,
+            COMPACT,
+            PAGE
+        }
+    }
+
+    private record PageChange(int id, byte[] record) {
     }
-}
\ No newline at end of file
+}
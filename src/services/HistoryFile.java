@@ -0,0 +1,137 @@
+package services;
+
+import exceptions.ManagerLoadException;
+import exceptions.ManagerSaveException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * История просмотров рядом с файлом данных: по одному id на строку в порядке просмотра.
+ * Просмотр дописывает одну строку; при восстановлении повторные id переносятся в конец,
+ * как в HistoryManager. Когда дописанных строк становится заметно больше, чем записей
+ * в истории, файл переписывается целиком - это O(размер истории), а не всех данных.
+ */
+class HistoryFile implements AutoCloseable {
+    static final String FILE_SUFFIX = ".history";
+    private static final int MIN_REWRITE_THRESHOLD = 64;
+    private final File file;
+    private final Charset charset;
+    private FileOutputStream stream;
+    private Writer writer;
+    private int appendedLines;
+    private int rewriteThreshold;
+
+    HistoryFile(File dataFile, Charset charset) {
+        this.file = new File(dataFile.getPath() + FILE_SUFFIX);
+        this.charset = charset;
+        this.rewriteThreshold = MIN_REWRITE_THRESHOLD;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean exists() {
+        return file.exists();
+    }
+
+    boolean append(int id) {
+        return appendAll(List.of(id));
+    }
+
+    /*
+     * Возвращает true, когда файл пора переписать целиком.
+     */
+    boolean appendAll(List<Integer> ids) {
+        try {
+            if (writer == null) {
+                stream = new FileOutputStream(file, true);
+                writer = new BufferedWriter(new OutputStreamWriter(stream, charset));
+            }
+            for (int id : ids) {
+                writer.write(id + "\n");
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи истории: " + file);
+        }
+        appendedLines += ids.size();
+        return appendedLines > rewriteThreshold;
+    }
+
+    void sync() {
+        if (writer == null) return;
+        try {
+            writer.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи истории: " + file);
+        }
+    }
+
+    List<Integer> read() {
+        List<Integer> ids = new ArrayList<>();
+        if (!file.exists()) return ids;
+
+        String content;
+        try {
+            content = Files.readString(file.toPath(), charset);
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения истории: " + file);
+        }
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = content.indexOf('\n', lineStart)) >= 0) {
+            String line = content.substring(lineStart, lineEnd).strip();
+            lineStart = lineEnd + 1;
+            if (line.isEmpty()) continue;
+            try {
+                ids.add(Integer.parseInt(line));
+            } catch (NumberFormatException e) {
+                throw new ManagerLoadException("Повреждённая запись истории '" + file + "': " + line);
+            }
+        }
+        return ids;
+    }
+
+    void rewrite(List<Integer> ids) {
+        close();
+        File tempFile = new File(file.getPath() + ".tmp");
+        StringBuilder sb = new StringBuilder();
+        for (int id : ids) {
+            sb.append(id).append('\n');
+        }
+        try {
+            Files.writeString(tempFile.toPath(), sb, charset);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи истории: " + file);
+        }
+        appendedLines = 0;
+        rewriteThreshold = Math.max(MIN_REWRITE_THRESHOLD, ids.size() * 2);
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия файла истории: " + file);
+        } finally {
+            writer = null;
+            stream = null;
+        }
+    }
+}
@@ -1,43 +1,136 @@
 package services;
 
+import tasks.AtomicIdGenerator;
 import tasks.Epic;
+import tasks.SortedIntSet;
+import tasks.IdGenerator;
 import tasks.Status;
 import tasks.Subtask;
 import tasks.Task;
+import tasks.TimeSlot;
+import tasks.Type;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 public class InMemoryTaskManager implements TaskManager {
+    private final TaskIndex index;
     private final Map<Integer, Task> tasks;
     private final Map<Integer, Epic> epics;
     private final Map<Integer, Subtask> subtasks;
+    private final Map<Integer, Task> tasksView;
+    private final Map<Integer, Epic> epicsView;
+    private final Map<Integer, Subtask> subtasksView;
     private final SortedSet<Task> prioritizedTasks;
+    private final IntervalIndex intervalIndex;
+    private final SlotOccupancyIndex occupancyIndex;
+    private final Map<Integer, EpicAggregate> epicAggregates;
+    private boolean epicAggregatesVerification;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLongArray typeVersions = new AtomicLongArray(Type.values().length);
+    private final AtomicLong historyVersion = new AtomicLong();
     protected final HistoryManager historyManager;
+    protected final IdGenerator idGenerator;
 
     InMemoryTaskManager(HistoryManager historyManager) {
-        tasks = new HashMap<>();
-        epics = new HashMap<>();
-        subtasks = new HashMap<>();
-        prioritizedTasks = new TreeSet<>(Comparator.nullsLast(Comparator.comparing(Task::getStartTime)));
+        this(historyManager, 0);
+    }
+
+    InMemoryTaskManager(HistoryManager historyManager, int occupancySlotMinutes) {
+        this(historyManager, new AtomicIdGenerator(), occupancySlotMinutes, false);
+    }
+
+    InMemoryTaskManager(HistoryManager historyManager, IdGenerator idGenerator) {
+        this(historyManager, idGenerator, 0, false);
+    }
+
+    InMemoryTaskManager(HistoryManager historyManager, IdGenerator idGenerator, int occupancySlotMinutes,
+                        boolean concurrent) {
+        index = new TaskIndex(concurrent);
+        tasks = index.view(Type.TASK);
+        epics = index.view(Type.EPIC);
+        subtasks = index.view(Type.SUBTASK);
+        tasksView = Collections.unmodifiableMap(tasks);
+        epicsView = Collections.unmodifiableMap(epics);
+        subtasksView = Collections.unmodifiableMap(subtasks);
+        epicAggregates = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        Comparator<Task> startTimeComparator = Comparator.nullsLast(Comparator.comparing(Task::getStartTime));
+        prioritizedTasks = concurrent ? new ConcurrentSkipListSet<>(startTimeComparator)
+                : new TreeSet<>(startTimeComparator);
+        intervalIndex = new IntervalIndex(concurrent);
+        occupancyIndex = occupancySlotMinutes > 0 ? new SlotOccupancyIndex(occupancySlotMinutes) : null;
         this.historyManager = historyManager;
+        this.idGenerator = idGenerator;
+    }
+
+    /*
+     * Версии растут после каждого изменения: общая - при любом, по типу - при изменении коллекции
+     * этого типа (подзадачи меняют и эпики через агрегаты), версия истории - при просмотре и удалении.
+     * Так по версии, прочитанной до сериализации, можно понять, что ответ не устарел. Операции,
+     * которые ничего не меняют (обновление или удаление отсутствующего id, очистка пустой коллекции),
+     * версию не трогают.
+     */
+    private void markChanged(Type... types) {
+        long current = version.incrementAndGet();
+        for (Type type : types) {
+            typeVersions.accumulateAndGet(type.ordinal(), current, Math::max);
+        }
+    }
+
+    private void markHistoryChanged(Task viewed) {
+        if (viewed != null) {
+            historyVersion.incrementAndGet();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public long getVersion(Type type) {
+        return typeVersions.get(type.ordinal());
+    }
+
+    @Override
+    public long getHistoryVersion() {
+        return historyVersion.get();
     }
 
     private boolean isTaskContains(Task task) {
-        int id = task.getId();
-        return tasks.containsKey(id) || epics.containsKey(id) || subtasks.containsKey(id);
+        return index.contains(task.getId());
+    }
+
+    void setEpicAggregatesVerification(boolean enabled) {
+        epicAggregatesVerification = enabled;
+    }
+
+    private EpicAggregate getEpicAggregate(int epicId) {
+        return epicAggregates.computeIfAbsent(epicId, id -> new EpicAggregate());
     }
 
-    private void computeEpicFields(Epic epic) {
-        Set<Integer> epicSubtasks = epic.getSubtasks();
+    private void applyEpicAggregate(Epic epic) {
+        getEpicAggregate(epic.getId()).applyTo(epic);
+        if (epicAggregatesVerification) {
+            verifyEpicFields(epic);
+        }
+    }
+
+    private void verifyEpicFields(Epic epic) {
         Set<Status> subtasksStatuses = new HashSet<>();
         SortedSet<LocalDateTime> subtasksDates = new TreeSet<>();
         Duration subtasksDuration = Duration.ZERO;
-        for (int subtaskId : epicSubtasks) {
-            Subtask subtask = subtasks.get(subtaskId);
+        SortedIntSet subtaskIds = epic.getSubtaskIds();
+        for (int i = 0; i < subtaskIds.size(); i++) {
+            Subtask subtask = subtasks.get(subtaskIds.get(i));
             subtasksStatuses.add(subtask.getStatus());
             LocalDateTime startTime = subtask.getStartTime();
             LocalDateTime endTime = subtask.getEndTime();
@@ -49,23 +142,23 @@ public class InMemoryTaskManager implements TaskManager {
             }
         }
 
-        if (!subtasksDates.isEmpty()) {
-            epic.setStartTime(subtasksDates.first());
-            epic.setEndTime(subtasksDates.last());
-            epic.setDuration(subtasksDuration);
+        boolean hasDates = !subtasksDates.isEmpty();
+        if (epic.getStatus() != computeEpicStatus(subtasksStatuses)
+                || !Objects.equals(epic.getStartTime(), hasDates ? subtasksDates.first() : null)
+                || !Objects.equals(epic.getEndTime(), hasDates ? subtasksDates.last() : null)
+                || !Objects.equals(epic.getDuration(), hasDates ? subtasksDuration : null)) {
+            throw new IllegalStateException("Рассогласованы агрегаты эпика: " + epic);
         }
-        setEpicStatus(epic, subtasksStatuses);
     }
 
-    private void setEpicStatus(Epic epic, Set<Status> subtasksStatuses) {
+    private Status computeEpicStatus(Set<Status> subtasksStatuses) {
         int size = subtasksStatuses.size();
         if (size == 0 || size == 1 && subtasksStatuses.contains(Status.NEW)) {
-            epic.setStatus(Status.NEW);
+            return Status.NEW;
         } else if (size == 1 && subtasksStatuses.contains(Status.DONE)) {
-            epic.setStatus(Status.DONE);
-        } else {
-            epic.setStatus(Status.IN_PROGRESS);
+            return Status.DONE;
         }
+        return Status.IN_PROGRESS;
     }
 
     @Override
@@ -74,50 +167,126 @@ public class InMemoryTaskManager implements TaskManager {
     }
 
     @Override
-    public int addEpic(Epic epic) {
-        if (isTaskContains(epic)) return -1;
+    public Map<Integer, Epic> getEpicsView() {
+        return epicsView;
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        return index.page(Type.EPIC, afterId, limit);
+    }
+
+    @Override
+    public int getEpicsCount() {
+        return epics.size();
+    }
+
+    @Override
+    public boolean containsEpic(int id) {
+        return epics.containsKey(id);
+    }
 
-        int epicId = epic.getId();
-        epics.put(epicId, epic);
-        return epicId;
+    @Override
+    public Epic findEpic(int id) {
+        return epics.get(id);
+    }
+
+    @Override
+    public int addEpic(Epic epic) {
+        return applyChange(TaskChange.add(epic), () -> {
+            if (isTaskContains(epic)) return -1;
+
+            int epicId = epic.getId();
+            epics.put(epicId, epic);
+            epicAggregates.put(epicId, new EpicAggregate());
+            idGenerator.advanceTo(epicId);
+            markChanged(Type.EPIC);
+            return epicId;
+        });
     }
 
     @Override
     public Epic getEpic(int id) {
-        Epic epic = epics.get(id);
-        historyManager.add(epic);
-        return epic;
+        return applyChange(TaskChange.view(Type.EPIC, id), () -> {
+            Epic epic = epics.get(id);
+            historyManager.add(epic);
+            markHistoryChanged(epic);
+            return epic;
+        });
     }
 
     @Override
     public void updateEpic(Epic epic) {
-        int id = epic.getId();
-        if (epics.containsKey(id)) {
-            Epic tergetEpic = epics.get(id);
-            tergetEpic.setName(epic.getName());
-            tergetEpic.setDescription(epic.getDescription());
-        }
+        change(TaskChange.update(epic), () -> {
+            int id = epic.getId();
+            if (epics.containsKey(id)) {
+                Epic tergetEpic = epics.get(id);
+                tergetEpic.setName(epic.getName());
+                tergetEpic.setDescription(epic.getDescription());
+                markChanged(Type.EPIC);
+            }
+        });
     }
 
     @Override
     public void removeEpic(int id) {
-        clearEpicSubtasks(id);
-        epics.remove(id);
-        historyManager.remove(id);
+        change(TaskChange.remove(Type.EPIC, id), () -> {
+            if (!epics.containsKey(id)) return;
+            clearEpicSubtasks(id);
+            epics.remove(id);
+            epicAggregates.remove(id);
+            historyManager.remove(id);
+            markChanged(Type.EPIC, Type.SUBTASK);
+            historyVersion.incrementAndGet();
+        });
     }
 
     @Override
     public void clearEpics() {
-        epics.clear();
-        subtasks.clear();
-        reloadPrioritizedTasks();
+        change(TaskChange.clear(Type.EPIC), () -> {
+            if (epics.isEmpty()) return;
+            epics.clear();
+            subtasks.clear();
+            epicAggregates.clear();
+            reloadPrioritizedTasks();
+            markChanged(Type.EPIC, Type.SUBTASK);
+        });
     }
 
+    /*
+     * Состав эпика - неизменяемый снимок, но подзадача из него могла быть удалена параллельно
+     * (ConcurrentTaskManager читает без блокировок), такие id пропускаются.
+     */
     @Override
     public Map<Integer, Subtask> getEpicSubtasks(int epicId) {
-        if (!epics.containsKey(epicId)) return new HashMap<>();
-        return epics.get(epicId).getSubtasks().stream()
-                .collect(Collectors.toMap(id -> id, subtasks::get, (a, b) -> b));
+        Epic epic = epics.get(epicId);
+        if (epic == null) return new HashMap<>();
+
+        Map<Integer, Subtask> epicSubtasks = new HashMap<>();
+        epic.getSubtaskIds().forEach(id -> {
+            Subtask subtask = subtasks.get(id);
+            if (subtask != null) {
+                epicSubtasks.put(id, subtask);
+            }
+        });
+        return epicSubtasks;
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(int epicId, int afterId, int limit) {
+        Epic epic = epics.get(epicId);
+        if (epic == null) return new ArrayList<>();
+
+        SortedIntSet ids = epic.getSubtaskIds();
+        int to = limit > 0 ? limit : ids.size();
+        List<Subtask> page = new ArrayList<>(Math.min(to, ids.size()));
+        for (int i = ids.indexAfter(afterId); i < ids.size() && page.size() < to; i++) {
+            Subtask subtask = subtasks.get(ids.get(i));
+            if (subtask != null) {
+                page.add(subtask);
+            }
+        }
+        return page;
     }
 
     @Override
@@ -125,80 +294,144 @@ public class InMemoryTaskManager implements TaskManager {
         return Map.copyOf(subtasks);
     }
 
+    @Override
+    public Map<Integer, Subtask> getSubtasksView() {
+        return subtasksView;
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        return index.page(Type.SUBTASK, afterId, limit);
+    }
+
+    @Override
+    public int getSubtasksCount() {
+        return subtasks.size();
+    }
+
+    @Override
+    public boolean containsSubtask(int id) {
+        return subtasks.containsKey(id);
+    }
+
+    @Override
+    public Subtask findSubtask(int id) {
+        return subtasks.get(id);
+    }
+
     @Override
     public int addSubtask(Subtask subtask) {
-        int epicId = subtask.getEpicId();
-        if (!epics.containsKey(epicId) || isTaskContains(subtask) ||
-                isIntersectedTask(subtask)) return -1;
+        return applyChange(TaskChange.add(subtask), () -> {
+            int epicId = subtask.getEpicId();
+            if (!epics.containsKey(epicId) || isTaskContains(subtask) ||
+                    isIntersectedTask(subtask)) return -1;
 
-        Epic epic = epics.get(epicId);
-        int subtaskId = subtask.getId();
-        epic.addSubtask(subtaskId);
-        subtasks.put(subtaskId, subtask);
-        computeEpicFields(epic);
-        addPrioritizedTask(subtask);
+            Epic epic = epics.get(epicId);
+            int subtaskId = subtask.getId();
+            epic.addSubtask(subtaskId);
+            subtasks.put(subtaskId, subtask);
+            getEpicAggregate(epicId).add(subtask);
+            applyEpicAggregate(epic);
+            addPrioritizedTask(subtask);
+            idGenerator.advanceTo(subtaskId);
+            markChanged(Type.SUBTASK, Type.EPIC);
 
-        return subtaskId;
+            return subtaskId;
+        });
     }
 
     private void addPrioritizedTask(Task task) {
         if (task.getStartTime() != null && task.getEndTime() != null) {
             prioritizedTasks.add(task);
+            intervalIndex.add(task);
+            if (occupancyIndex != null) {
+                occupancyIndex.occupy(new TimeSlot(task.getStartTime(), task.getEndTime()));
+            }
+        }
+    }
+
+    private void removePrioritizedTask(Task task) {
+        if (task == null) return;
+        if (task.getStartTime() != null) {
+            prioritizedTasks.remove(task);
+        }
+        TimeSlot timeSlot = intervalIndex.remove(task.getId());
+        if (timeSlot != null && occupancyIndex != null) {
+            occupancyIndex.release(timeSlot);
+            TimeSlot alignedSlot = occupancyIndex.alignToSlots(timeSlot);
+            intervalIndex.getOverlapping(alignedSlot.getStartTime(), alignedSlot.getEndTime())
+                    .forEach(occupancyIndex::occupy);
         }
     }
 
     @Override
     public Subtask getSubtask(int id) {
-        Subtask subtask = subtasks.get(id);
-        historyManager.add(subtask);
-        return subtask;
+        return applyChange(TaskChange.view(Type.SUBTASK, id), () -> {
+            Subtask subtask = subtasks.get(id);
+            historyManager.add(subtask);
+            markHistoryChanged(subtask);
+            return subtask;
+        });
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
-        int id = subtask.getId();
-        if (subtasks.containsKey(id) && !isIntersectedTask(subtask)) {
-            subtasks.put(id, subtask);
-            computeEpicFields(epics.get(subtask.getEpicId()));
-            prioritizedTasks.remove(subtask);
-            addPrioritizedTask(subtask);
-        }
+        change(TaskChange.update(subtask), () -> {
+            int id = subtask.getId();
+            if (subtasks.containsKey(id) && !isIntersectedTask(subtask)) {
+                Epic epic = epics.get(subtasks.get(id).getEpicId());
+                removePrioritizedTask(subtasks.get(id));
+                subtasks.put(id, subtask);
+                getEpicAggregate(epic.getId()).add(subtask);
+                applyEpicAggregate(epic);
+                addPrioritizedTask(subtask);
+                markChanged(Type.SUBTASK, Type.EPIC);
+            }
+        });
     }
 
     @Override
     public void removeSubtask(int id) {
-        Subtask subtask = subtasks.get(id);
-        if (subtask != null) {
-            int epicId = subtasks.get(id).getEpicId();
-            Epic epic = epics.get(epicId);
-            epic.removeSubtask(id);
-            computeEpicFields(epic);
-            if (subtask.getStartTime() != null) {
-                prioritizedTasks.remove(subtask);
+        change(TaskChange.remove(Type.SUBTASK, id), () -> {
+            Subtask subtask = subtasks.get(id);
+            if (subtask != null) {
+                int epicId = subtasks.get(id).getEpicId();
+                Epic epic = epics.get(epicId);
+                epic.removeSubtask(id);
+                removePrioritizedTask(subtask);
+                subtasks.remove(id);
+                getEpicAggregate(epicId).remove(id);
+                applyEpicAggregate(epic);
+                historyManager.remove(id);
+                markChanged(Type.SUBTASK, Type.EPIC);
+                historyVersion.incrementAndGet();
             }
-            subtasks.remove(id);
-            historyManager.remove(id);
-        }
+        });
     }
 
     @Override
     public void clearEpicSubtasks(int id) {
-        if (!epics.containsKey(id)) return;
-        Epic epic = epics.get(id);
-        epic.getSubtasks()
-                .forEach(subtaskId -> {
-                    prioritizedTasks.remove(subtasks.get(subtaskId));
-                    subtasks.remove(subtaskId);
-                    historyManager.remove(subtaskId);
-                });
-        epic.clearSubtasks();
-        epic.setStatus(Status.NEW);
+        change(TaskChange.clearSubtasks(id), () -> {
+            Epic epic = epics.get(id);
+            if (epic == null || epic.getSubtaskIds().isEmpty()) return;
+            epic.getSubtaskIds()
+                    .forEach(subtaskId -> {
+                        removePrioritizedTask(subtasks.get(subtaskId));
+                        subtasks.remove(subtaskId);
+                        historyManager.remove(subtaskId);
+                    });
+            epic.clearSubtasks();
+            getEpicAggregate(id).clear();
+            applyEpicAggregate(epic);
+            markChanged(Type.SUBTASK, Type.EPIC);
+            historyVersion.incrementAndGet();
+        });
     }
 
     @Override
     public void clearSubtasks() {
-        epics.keySet()
-                .forEach(this::clearEpicSubtasks);
+        change(TaskChange.clear(Type.SUBTASK), () -> new ArrayList<>(epics.keySet())
+                .forEach(this::clearEpicSubtasks));
     }
 
     @Override
@@ -207,57 +440,137 @@ public class InMemoryTaskManager implements TaskManager {
     }
 
     @Override
-    public int addTask(Task task) {
-        if (isTaskContains(task) || task.getClass() != Task.class
-                || isIntersectedTask(task)) return -1;
+    public Map<Integer, Task> getTasksView() {
+        return tasksView;
+    }
+
+    @Override
+    public List<Task> getTasks(int afterId, int limit) {
+        return index.page(Type.TASK, afterId, limit);
+    }
+
+    @Override
+    public int getTasksCount() {
+        return tasks.size();
+    }
 
-        int taskId = task.getId();
-        tasks.putIfAbsent(taskId, task);
-        addPrioritizedTask(task);
-        return taskId;
+    @Override
+    public boolean containsTask(int id) {
+        return tasks.containsKey(id);
+    }
+
+    @Override
+    public Task findTask(int id) {
+        return tasks.get(id);
+    }
+
+    @Override
+    public int addTask(Task task) {
+        return applyChange(TaskChange.add(task), () -> {
+            if (isTaskContains(task) || task.getClass() != Task.class
+                    || isIntersectedTask(task)) return -1;
+
+            int taskId = task.getId();
+            tasks.putIfAbsent(taskId, task);
+            addPrioritizedTask(task);
+            idGenerator.advanceTo(taskId);
+            markChanged(Type.TASK);
+            return taskId;
+        });
     }
 
     @Override
     public Task getTask(int id) {
-        Task task = tasks.get(id);
-        historyManager.add(task);
-        return task;
+        return applyChange(TaskChange.view(Type.TASK, id), () -> {
+            Task task = tasks.get(id);
+            historyManager.add(task);
+            markHistoryChanged(task);
+            return task;
+        });
     }
 
     @Override
     public void updateTask(Task task) {
-        int taskId = task.getId();
-        if (!tasks.containsKey(taskId) || isIntersectedTask(task)) return;
-        Task oldTask = tasks.get(taskId);
-
-        if (oldTask.getStartTime() != null) {
-            prioritizedTasks.remove(oldTask);
-        }
-        tasks.put(taskId, task);
-        addPrioritizedTask(task);
+        change(TaskChange.update(task), () -> {
+            int taskId = task.getId();
+            if (!tasks.containsKey(taskId) || isIntersectedTask(task)) return;
+            removePrioritizedTask(tasks.get(taskId));
+            tasks.put(taskId, task);
+            addPrioritizedTask(task);
+            markChanged(Type.TASK);
+        });
     }
 
     @Override
     public void removeTask(int id) {
-        Task task = tasks.get(id);
-        if (task.getStartTime() != null) {
-            prioritizedTasks.remove(task);
-        }
-        tasks.remove(id);
-        historyManager.remove(id);
+        change(TaskChange.remove(Type.TASK, id), () -> {
+            if (!tasks.containsKey(id)) return;
+            removePrioritizedTask(tasks.get(id));
+            tasks.remove(id);
+            historyManager.remove(id);
+            markChanged(Type.TASK);
+            historyVersion.incrementAndGet();
+        });
     }
 
     @Override
     public void clearTasks() {
-        tasks.clear();
-        reloadPrioritizedTasks();
+        change(TaskChange.clear(Type.TASK), () -> {
+            if (tasks.isEmpty()) return;
+            tasks.clear();
+            reloadPrioritizedTasks();
+            markChanged(Type.TASK);
+        });
     }
 
     @Override
     public void clearAllData() {
-        clearEpics();
-        clearTasks();
-        prioritizedTasks.clear();
+        change(TaskChange.clear(null), () -> {
+            clearEpics();
+            clearTasks();
+            prioritizedTasks.clear();
+            intervalIndex.clear();
+            if (occupancyIndex != null) {
+                occupancyIndex.clear();
+            }
+        });
+    }
+
+    /*
+     * Единственная точка расширения для менеджеров, сохраняющих данные: через неё проходит каждый
+     * публичный метод, меняющий задачи или историю (просмотр - TaskChange.Kind.VIEW). Вложенные вызовы
+     * (removeEpic очищает подзадачи эпика) тоже проходят через неё; отличить внешнюю операцию -
+     * дело подкласса.
+     */
+    <T> T applyChange(TaskChange change, Supplier<T> action) {
+        return action.get();
+    }
+
+    private void change(TaskChange change, Runnable action) {
+        applyChange(change, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    @Override
+    public Type getTaskType(int id) {
+        return index.getType(id);
+    }
+
+    Task findAnyTask(int id) {
+        Type type = getTaskType(id);
+        if (type == null) return null;
+        return switch (type) {
+            case EPIC -> findEpic(id);
+            case SUBTASK -> findSubtask(id);
+            case TASK -> findTask(id);
+        };
+    }
+
+    @Override
+    public IdGenerator getIdGenerator() {
+        return idGenerator;
     }
 
     @Override
@@ -267,9 +580,101 @@ public class InMemoryTaskManager implements TaskManager {
 
     public void reloadPrioritizedTasks() {
         prioritizedTasks.clear();
-        Stream.concat(getTasks().values().stream(), getSubtasks().values().stream())
-                .filter(task -> task.getStartTime() != null)
-                .forEach(prioritizedTasks::add);
+        intervalIndex.clear();
+        if (occupancyIndex != null) {
+            occupancyIndex.clear();
+        }
+        Stream.concat(tasks.values().stream(), subtasks.values().stream())
+                .forEach(this::addPrioritizedTask);
+    }
+
+    /*
+     * Массовое восстановление в пустой менеджер, например при загрузке из файла. Пересечения не
+     * проверяются на каждой строке, а агрегаты эпика не пересчитываются после каждой подзадачи:
+     * строки вставляются целиком, затем один проход по задачам, отсортированным по началу, строит
+     * индексы расписания и находит пересечения, и агрегаты каждого эпика считаются один раз.
+     * Повторные id, подзадачи без эпика и задачи, пересекающиеся с более ранней, отбрасываются
+     * и возвращаются как конфликты.
+     */
+    List<RestoreConflict> restore(Collection<? extends Task> loaded) {
+        if (!epics.isEmpty() || !subtasks.isEmpty() || !tasks.isEmpty()) {
+            throw new IllegalStateException("Массовое восстановление возможно только в пустой менеджер.");
+        }
+
+        List<RestoreConflict> conflicts = new ArrayList<>();
+        for (Task task : loaded) {
+            if (task instanceof Epic epic && isRestorable(epic, conflicts)) {
+                epics.put(epic.getId(), epic);
+                epicAggregates.put(epic.getId(), new EpicAggregate());
+            }
+        }
+        List<Task> scheduled = new ArrayList<>();
+        for (Task task : loaded) {
+            if (task instanceof Subtask subtask && isRestorable(subtask, conflicts)) {
+                if (!epics.containsKey(subtask.getEpicId())) {
+                    conflicts.add(new RestoreConflict(subtask.getId(), RestoreConflict.Reason.MISSING_EPIC, -1));
+                    continue;
+                }
+                subtasks.put(subtask.getId(), subtask);
+                if (subtask.getStartTime() != null && subtask.getEndTime() != null) {
+                    scheduled.add(subtask);
+                }
+            }
+        }
+        for (Task task : loaded) {
+            if (task.getClass() == Task.class && isRestorable(task, conflicts)) {
+                tasks.put(task.getId(), task);
+                if (task.getStartTime() != null && task.getEndTime() != null) {
+                    scheduled.add(task);
+                }
+            }
+        }
+
+        scheduled.sort(Comparator.comparing(Task::getStartTime));
+        Task previous = null;
+        for (Task task : scheduled) {
+            if (previous != null && (previous.getStartTime().equals(task.getStartTime())
+                    || previous.getEndTime().isAfter(task.getStartTime()))) {
+                conflicts.add(new RestoreConflict(task.getId(), RestoreConflict.Reason.INTERSECTION,
+                        previous.getId()));
+                if (task instanceof Subtask) {
+                    subtasks.remove(task.getId());
+                } else {
+                    tasks.remove(task.getId());
+                }
+                continue;
+            }
+            addPrioritizedTask(task);
+            previous = task;
+        }
+
+        Map<Integer, List<Subtask>> epicSubtasks = new HashMap<>();
+        int maxId = 0;
+        for (Subtask subtask : subtasks.values()) {
+            epicSubtasks.computeIfAbsent(subtask.getEpicId(), id -> new ArrayList<>()).add(subtask);
+            maxId = Math.max(maxId, subtask.getId());
+        }
+        for (Epic epic : epics.values()) {
+            List<Subtask> linked = epicSubtasks.getOrDefault(epic.getId(), List.of());
+            epic.addSubtasks(linked.stream().mapToInt(Task::getId).toArray());
+            EpicAggregate aggregate = getEpicAggregate(epic.getId());
+            linked.forEach(aggregate::add);
+            applyEpicAggregate(epic);
+            maxId = Math.max(maxId, epic.getId());
+        }
+        for (Task task : tasks.values()) {
+            maxId = Math.max(maxId, task.getId());
+        }
+        idGenerator.advanceTo(maxId);
+        markChanged(Type.values());
+        return conflicts;
+    }
+
+    private boolean isRestorable(Task task, List<RestoreConflict> conflicts) {
+        if (!isTaskContains(task)) return true;
+
+        conflicts.add(new RestoreConflict(task.getId(), RestoreConflict.Reason.DUPLICATE_ID, task.getId()));
+        return false;
     }
 
     @Override
@@ -277,13 +682,38 @@ public class InMemoryTaskManager implements TaskManager {
         return prioritizedTasks;
     }
 
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit, LocalDateTime cursor) {
+        return intervalIndex.getTasks(from, to, limit, cursor);
+    }
+
     @Override
     public boolean isIntersectedTask(Task task) {
         if (task.getStartTime() == null || task.getEndTime() == null) return false;
-        return prioritizedTasks.stream()
-                .filter(t -> !t.equals(task))
-                .anyMatch(t -> t.getStartTime().equals(task.getStartTime()) ||
-                        (t.getStartTime().isBefore(task.getEndTime()) &&
-                                t.getEndTime().isAfter(task.getStartTime())));
+        if (occupancyIndex != null && occupancyIndex.isFree(task.getStartTime(), task.getEndTime())) return false;
+        return intervalIndex.isIntersected(task);
+    }
+
+    @Override
+    public int scheduleEarliest(Task task, LocalDateTime notBefore) {
+        Duration duration = task.getDuration();
+        if (task instanceof Epic || notBefore == null || duration == null || duration.isNegative()) return -1;
+        if (task instanceof Subtask subtask && !epics.containsKey(subtask.getEpicId())) return -1;
+
+        LocalDateTime startTime = task.getStartTime();
+        task.setStartTime(intervalIndex.findEarliestStart(notBefore, duration));
+        int id = task instanceof Subtask subtask ? addSubtask(subtask) : addTask(task);
+        if (id < 0) {
+            task.setStartTime(startTime);
+        }
+        return id;
+    }
+
+    @Override
+    public List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration duration) {
+        if (occupancyIndex != null) {
+            return occupancyIndex.findFreeSlots(from, to, duration);
+        }
+        return intervalIndex.findFreeSlots(from, to, duration);
     }
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package services;
+
+import tasks.Task;
+import tasks.TimeSlot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+class IntervalIndex {
+    private final NavigableMap<LocalDateTime, Interval> intervalsByStart;
+    private final Map<Integer, Interval> intervalsById;
+
+    IntervalIndex() {
+        this(false);
+    }
+
+    IntervalIndex(boolean concurrent) {
+        intervalsByStart = concurrent ? new ConcurrentSkipListMap<>() : new TreeMap<>();
+        intervalsById = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    void add(Task task) {
+        LocalDateTime startTime = task.getStartTime();
+        LocalDateTime endTime = task.getEndTime();
+        if (startTime == null || endTime == null) return;
+
+        remove(task.getId());
+        Interval interval = new Interval(task, startTime, endTime);
+        intervalsByStart.put(startTime, interval);
+        intervalsById.put(task.getId(), interval);
+    }
+
+    TimeSlot remove(int id) {
+        Interval interval = intervalsById.remove(id);
+        if (interval == null) return null;
+
+        intervalsByStart.remove(interval.startTime());
+        return interval.toTimeSlot();
+    }
+
+    void clear() {
+        intervalsByStart.clear();
+        intervalsById.clear();
+    }
+
+    int size() {
+        return intervalsById.size();
+    }
+
+    /*
+     * Индекс хранит только непересекающиеся интервалы, поэтому при сортировке по началу
+     * их концы тоже упорядочены. Достаточно проверить совпадение начала и ближайший
+     * интервал, начинающийся раньше конца проверяемого: O(log n) вместо полного обхода.
+     */
+    boolean isIntersected(Task task) {
+        LocalDateTime startTime = task.getStartTime();
+        LocalDateTime endTime = task.getEndTime();
+        if (startTime == null || endTime == null) return false;
+
+        int id = task.getId();
+        Interval sameStart = intervalsByStart.get(startTime);
+        if (sameStart != null && sameStart.id() != id) return true;
+
+        Map.Entry<LocalDateTime, Interval> candidate = intervalsByStart.lowerEntry(endTime);
+        if (candidate != null && candidate.getValue().id() == id) {
+            candidate = intervalsByStart.lowerEntry(candidate.getKey());
+        }
+        return candidate != null && candidate.getValue().endTime().isAfter(startTime);
+    }
+
+    List<TimeSlot> getOverlapping(LocalDateTime from, LocalDateTime to) {
+        List<TimeSlot> result = new ArrayList<>();
+        Map.Entry<LocalDateTime, Interval> previous = intervalsByStart.lowerEntry(from);
+        if (previous != null && previous.getValue().endTime().isAfter(from)) {
+            result.add(previous.getValue().toTimeSlot());
+        }
+        for (Interval interval : intervalsByStart.subMap(from, true, to, false).values()) {
+            result.add(interval.toTimeSlot());
+        }
+        return result;
+    }
+
+    /*
+     * Задачи, пересекающие [from, to), в порядке начала. Без курсора в выборку попадает и
+     * задача, начавшаяся до from; с курсором выборка продолжается строго после его начала.
+     * Границы null означают отсутствие ограничения, limit <= 0 - без ограничения по числу.
+     */
+    List<Task> getTasks(LocalDateTime from, LocalDateTime to, int limit, LocalDateTime cursor) {
+        List<Task> result = new ArrayList<>();
+        NavigableMap<LocalDateTime, Interval> range = intervalsByStart;
+        if (cursor != null && (from == null || !cursor.isBefore(from))) {
+            range = range.tailMap(cursor, false);
+        } else if (from != null) {
+            Map.Entry<LocalDateTime, Interval> previous = intervalsByStart.lowerEntry(from);
+            if (previous != null && previous.getValue().endTime().isAfter(from)
+                    && (cursor == null || previous.getKey().isAfter(cursor))) {
+                result.add(previous.getValue().task());
+            }
+            range = range.tailMap(from, true);
+        }
+        if (to != null) {
+            range = range.headMap(to, false);
+        }
+        for (Interval interval : range.values()) {
+            if (limit > 0 && result.size() >= limit) break;
+            result.add(interval.task());
+        }
+        return result;
+    }
+
+    /*
+     * Первое окно длиной duration, начинающееся не раньше notBefore. Интервалы не пересекаются,
+     * поэтому достаточно пройти вперёд от интервала, покрывающего notBefore, до первого зазора.
+     */
+    LocalDateTime findEarliestStart(LocalDateTime notBefore, Duration duration) {
+        LocalDateTime candidate = notBefore;
+        Map.Entry<LocalDateTime, Interval> previous = intervalsByStart.lowerEntry(candidate);
+        if (previous != null && previous.getValue().endTime().isAfter(candidate)) {
+            candidate = previous.getValue().endTime();
+        }
+        for (Interval interval : intervalsByStart.tailMap(candidate, true).values()) {
+            LocalDateTime endTime = candidate.plus(duration);
+            if (endTime.isBefore(interval.startTime())
+                    || (endTime.equals(interval.startTime()) && candidate.isBefore(endTime))) {
+                return candidate;
+            }
+            if (interval.endTime().isAfter(candidate)) {
+                candidate = interval.endTime();
+            }
+        }
+        return candidate;
+    }
+
+    List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration duration) {
+        List<TimeSlot> result = new ArrayList<>();
+        LocalDateTime freeFrom = from;
+        for (TimeSlot busy : getOverlapping(from, to)) {
+            SlotOccupancyIndex.addFreeSlot(result, freeFrom, busy.getStartTime(), duration);
+            if (busy.getEndTime().isAfter(freeFrom)) {
+                freeFrom = busy.getEndTime();
+            }
+        }
+        SlotOccupancyIndex.addFreeSlot(result, freeFrom, to, duration);
+        return result;
+    }
+
+    private record Interval(Task task, LocalDateTime startTime, LocalDateTime endTime) {
+        int id() {
+            return task.getId();
+        }
+
+        TimeSlot toTimeSlot() {
+            return new TimeSlot(startTime, endTime);
+        }
+    }
+}
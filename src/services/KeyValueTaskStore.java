@@ -0,0 +1,202 @@
+package services;
+
+import exceptions.ManagerLoadException;
+import exceptions.ManagerSaveException;
+import tasks.Task;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/*
+ * Встроенное хранилище "ключ - значение" без внешнего сервиса: таблица id -> задача лежит
+ * в страничном файле (PagedTaskFile) с индексом id -> страницы, транзакции проходят через журнал
+ * упреждающей записи <file>.wal:
+ * 1. транзакция целиком пишется в .wal одной записью с длиной и CRC32 и сбрасывается на диск;
+ * 2. изменения применяются к страничному файлу, он сбрасывается на диск;
+ * 3. .wal обрезается.
+ * При открытии целая запись .wal применяется повторно (применение идемпотентно), оборванная
+ * отбрасывается - транзакция не была зафиксирована. История просмотров - в файле <file>.history.
+ */
+public final class KeyValueTaskStore implements TaskStore {
+    static final String WAL_SUFFIX = ".wal";
+    private final File file;
+    private final File walFile;
+    private final HistoryFile historyFile;
+    private PagedTaskFile table;
+    private FileChannel wal;
+
+    public KeyValueTaskStore(File file) {
+        this.file = file;
+        this.walFile = new File(file.getPath() + WAL_SUFFIX);
+        this.historyFile = new HistoryFile(file, FileBackedTaskManager.DATA_FILE_CHARSET);
+    }
+
+    @Override
+    public synchronized List<Integer> load(Consumer<Task> sink) {
+        if (table != null) {
+            throw new IllegalStateException("Хранилище уже загружено: " + file);
+        }
+        Map<Integer, Task> tasks = new TreeMap<>();
+        if (file.exists() && PagedTaskFile.isPaged(file)) {
+            table = PagedTaskFile.open(file, task -> tasks.put(task.getId(), task));
+        } else {
+            if (file.exists() && file.length() > 0) {
+                FileBackedTaskManager.readDataFile(file, task -> tasks.put(task.getId(), task));
+            }
+            table = PagedTaskFile.create(file, new ArrayList<>(tasks.values()));
+        }
+        try {
+            wal = FileChannel.open(walFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            replayWal(tasks);
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения журнала транзакций: " + walFile);
+        }
+        tasks.values().forEach(sink);
+        return historyFile.exists() ? historyFile.read() : List.of();
+    }
+
+    @Override
+    public synchronized Task find(int id) {
+        checkLoaded();
+        return table.get(id);
+    }
+
+    @Override
+    public synchronized void commit(Transaction transaction) {
+        checkLoaded();
+        if (transaction.isEmpty()) return;
+
+        List<Integer> putIds = new ArrayList<>(transaction.getPuts().size());
+        List<byte[]> records = new ArrayList<>(transaction.getPuts().size());
+        for (Task task : transaction.getPuts()) {
+            putIds.add(task.getId());
+            records.add(BinaryTaskFormat.encodeTask(task));
+        }
+        List<Integer> deletes = new ArrayList<>(transaction.getDeletes());
+        try {
+            ByteBuffer entry = encodeEntry(putIds, records, deletes);
+            wal.write(entry, 0);
+            wal.force(false);
+            apply(putIds, records, deletes);
+            table.force();
+            wal.truncate(0);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи журнала транзакций: " + walFile);
+        }
+    }
+
+    @Override
+    public synchronized void recordView(int id, Supplier<List<Integer>> history) {
+        if (historyFile.append(id)) {
+            historyFile.rewrite(history.get());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (table != null) {
+            table.close();
+        }
+        historyFile.close();
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка закрытия файла: " + walFile);
+            }
+        }
+    }
+
+    private void checkLoaded() {
+        if (table == null) {
+            throw new IllegalStateException("Хранилище не загружено: " + file);
+        }
+    }
+
+    private void apply(List<Integer> putIds, List<byte[]> records, List<Integer> deletes) {
+        for (int i = 0; i < putIds.size(); i++) {
+            table.put(putIds.get(i), records.get(i));
+        }
+        for (int id : deletes) {
+            table.delete(id);
+        }
+    }
+
+    /*
+     * Запись журнала: длина, CRC32, затем число записей и пары (id, задача), число удалений и их id.
+     */
+    private static ByteBuffer encodeEntry(List<Integer> putIds, List<byte[]> records, List<Integer> deletes)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(putIds.size());
+        for (int i = 0; i < putIds.size(); i++) {
+            out.writeInt(putIds.get(i));
+            out.writeInt(records.get(i).length);
+            out.write(records.get(i));
+        }
+        out.writeInt(deletes.size());
+        for (int id : deletes) {
+            out.writeInt(id);
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer entry = ByteBuffer.allocate(8 + payload.length);
+        entry.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        entry.flip();
+        return entry;
+    }
+
+    private void replayWal(Map<Integer, Task> tasks) throws IOException {
+        if (wal.size() < 8) {
+            wal.truncate(0);
+            return;
+        }
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(walFile.toPath()));
+        int length = data.getInt();
+        int checksum = data.getInt();
+        if (length >= 0 && length <= data.remaining()) {
+            CRC32 crc = new CRC32();
+            crc.update(data.array(), 8, length);
+            if ((int) crc.getValue() == checksum) {
+                List<Integer> putIds = new ArrayList<>();
+                List<byte[]> records = new ArrayList<>();
+                int putCount = data.getInt();
+                for (int i = 0; i < putCount; i++) {
+                    putIds.add(data.getInt());
+                    byte[] record = new byte[data.getInt()];
+                    data.get(record);
+                    records.add(record);
+                    Task task = BinaryTaskFormat.decodeTask(record, 0, record.length);
+                    tasks.put(task.getId(), task);
+                }
+                List<Integer> deletes = new ArrayList<>();
+                int deleteCount = data.getInt();
+                for (int i = 0; i < deleteCount; i++) {
+                    int id = data.getInt();
+                    deletes.add(id);
+                    tasks.remove(id);
+                }
+                apply(putIds, records, deletes);
+                table.force();
+            }
+        }
+        wal.truncate(0);
+        wal.force(false);
+    }
+}
@@ -1,11 +1,54 @@
 package services;
 
+import tasks.IdGenerator;
+import tasks.AtomicIdGenerator;
+
+import java.io.File;
+
 public class Managers {
 
     public static TaskManager getDefaultTaskManager() {
         return new InMemoryTaskManager(getDefaultHistoryManager());
     }
 
+    public static TaskManager getTaskManager(IdGenerator idGenerator) {
+        return new InMemoryTaskManager(getDefaultHistoryManager(), idGenerator);
+    }
+
+    public static TaskManager getSlotIndexedTaskManager(int slotMinutes) {
+        return new InMemoryTaskManager(getDefaultHistoryManager(), slotMinutes);
+    }
+
+    public static TaskManager getConcurrentTaskManager() {
+        return new ConcurrentTaskManager(getDefaultHistoryManager());
+    }
+
+    public static FileBackedTaskManager getFileBackedTaskManager(File dataFile, StorageMode storageMode,
+                                                                 DataFormat dataFormat) {
+        return new FileBackedTaskManager(getDefaultHistoryManager(), new AtomicIdGenerator(), dataFile,
+                storageMode, null, dataFormat);
+    }
+
+    public static StoreBackedTaskManager getStoreBackedTaskManager(TaskStore store) {
+        return StoreBackedTaskManager.loadFromStore(store);
+    }
+
+    /*
+     * Менеджер для доступа из нескольких потоков: ConcurrentTaskManager возвращается как есть,
+     * остальные оборачиваются блокировкой чтения-записи. Файловый менеджер принимается только
+     * с отложенной записью: иначе каждое изменение пишет файл под блокировкой записи обёртки,
+     * и все чтения ждут ввода-вывода.
+     */
+    public static TaskManager getThreadSafeTaskManager(TaskManager taskManager) {
+        if (taskManager instanceof ConcurrentTaskManager || taskManager instanceof SynchronizedTaskManager) {
+            return taskManager;
+        }
+        if (taskManager instanceof FileBackedTaskManager fileBacked && fileBacked.getDurabilityPolicy() == null) {
+            throw new IllegalArgumentException("Файловому менеджеру для нескольких потоков нужна отложенная запись.");
+        }
+        return new SynchronizedTaskManager(taskManager);
+    }
+
     public static HistoryManager getDefaultHistoryManager() {
         return new InMemoryHistoryManager();
     }
@@ -0,0 +1,391 @@
+package services;
+
+import exceptions.ManagerLoadException;
+import exceptions.ManagerSaveException;
+import tasks.Task;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+ * Страничный файл данных: страница 0 - заголовок (MAGIC, VERSION, размер страницы), дальше страницы
+ * фиксированного размера. Страница: вид (свободна, начало записи, продолжение), номер следующей
+ * страницы цепочки, число занятых байт, CRC32 и данные. Запись - номер версии, id, длина и задача
+ * в двоичном формате; длинная запись занимает цепочку страниц.
+ * Изменение записи пишет новую версию в свободные страницы позиционной записью FileChannel, сбрасывает
+ * её на диск и только потом помечает свободной первую страницу старой версии: иначе диск может
+ * переупорядочить записи, и после сбоя останется пометка без новой версии. Так сбой посередине
+ * оставляет целой хотя бы одну версию. При открытии файл просматривается один раз: для каждого id берётся целая
+ * версия с наибольшим номером, остальные страницы попадают в список свободных.
+ */
+final class PagedTaskFile implements AutoCloseable {
+    static final int MAGIC = 0x544B5047;
+    static final int VERSION = 1;
+    static final int DEFAULT_PAGE_SIZE = 256;
+    private static final byte FREE = 0;
+    private static final byte HEAD = 1;
+    private static final byte CONTINUATION = 2;
+    private static final int NO_PAGE = -1;
+    private static final int PAGE_HEADER_SIZE = 11;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private final File file;
+    private final int pageSize;
+    private final Map<Integer, int[]> pagesById;
+    private final BitSet freePages;
+    private FileChannel channel;
+    private int pageCount;
+    private long nextVersion;
+    private long pageWrites;
+
+    private PagedTaskFile(File file, int pageSize) {
+        this.file = file;
+        this.pageSize = pageSize;
+        this.pagesById = new HashMap<>();
+        this.freePages = new BitSet();
+        this.pageCount = 1;
+        this.nextVersion = 1;
+    }
+
+    static boolean isPaged(File file) {
+        try (DataInputStream stream = new DataInputStream(new FileInputStream(file))) {
+            return stream.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
+        }
+    }
+
+    /*
+     * Открывает существующий файл и отдаёт его задачи в sink.
+     */
+    static PagedTaskFile open(File file, Consumer<Task> sink) {
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(12);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 12 || header.getInt() != MAGIC) {
+                channel.close();
+                throw new ManagerLoadException("Файл не является страничным: " + file);
+            }
+            int version = header.getInt();
+            int pageSize = header.getInt();
+            if (version != VERSION || pageSize <= PAGE_HEADER_SIZE + RECORD_HEADER_SIZE) {
+                channel.close();
+                throw new ManagerLoadException("Неподдерживаемый страничный файл '" + file + "': " + version);
+            }
+            PagedTaskFile pagedFile = new PagedTaskFile(file, pageSize);
+            pagedFile.channel = channel;
+            pagedFile.scan(sink);
+            return pagedFile;
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
+        }
+    }
+
+    static void read(File file, Consumer<Task> sink) {
+        open(file, sink).close();
+    }
+
+    /*
+     * Новый плотно заполненный файл с задачами tasks; заменяет file атомарно.
+     */
+    static PagedTaskFile create(File file, List<Task> tasks) {
+        PagedTaskFile pagedFile = new PagedTaskFile(file, DEFAULT_PAGE_SIZE);
+        pagedFile.rewrite(tasks);
+        return pagedFile;
+    }
+
+    synchronized void rewrite(List<Task> tasks) {
+        File tempFile = AtomicDataFile.tempFileOf(file);
+        closeChannel();
+        pagesById.clear();
+        freePages.clear();
+        pageCount = 1;
+        nextVersion = 1;
+        try {
+            channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(pageSize);
+            header.putInt(MAGIC).putInt(VERSION).putInt(pageSize);
+            header.rewind();
+            channel.write(header, 0);
+            for (Task task : tasks) {
+                put(task.getId(), BinaryTaskFormat.encodeTask(task));
+            }
+            channel.force(true);
+            channel.close();
+            AtomicDataFile.replace(tempFile, file);
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи страничного файла: " + file);
+        }
+    }
+
+    synchronized void put(int id, byte[] task) {
+        int dataPerPage = pageSize - PAGE_HEADER_SIZE;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + task.length);
+        record.putLong(nextVersion++).putInt(id).putInt(task.length).put(task);
+        byte[] bytes = record.array();
+        int[] pages = allocate(Math.max(1, (bytes.length + dataPerPage - 1) / dataPerPage));
+        try {
+            for (int i = pages.length - 1; i >= 0; i--) {
+                int from = i * dataPerPage;
+                int used = Math.min(dataPerPage, bytes.length - from);
+                int next = i + 1 < pages.length ? pages[i + 1] : NO_PAGE;
+                writePage(pages[i], i == 0 ? HEAD : CONTINUATION, next, bytes, from, used);
+            }
+            int[] oldPages = pagesById.put(id, pages);
+            if (oldPages != null) {
+                channel.force(false);
+                release(oldPages);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи страничного файла: " + file);
+        }
+    }
+
+    /*
+     * Чтение одной записи по индексу id -> страницы: позиционное чтение только её страниц.
+     */
+    synchronized Task get(int id) {
+        int[] pages = pagesById.get(id);
+        if (pages == null) return null;
+
+        byte[] data = new byte[pages.length * pageSize];
+        try {
+            for (int i = 0; i < pages.length; i++) {
+                readFully(ByteBuffer.wrap(data, i * pageSize, pageSize), (long) pages[i] * pageSize);
+            }
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
+        }
+        int[] localPages = new int[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            localPages[i] = i;
+        }
+        byte[] record = join(data, localPages);
+        int length = ByteBuffer.wrap(record, 12, 4).getInt();
+        return BinaryTaskFormat.decodeTask(record, RECORD_HEADER_SIZE, length);
+    }
+
+    synchronized void delete(int id) {
+        int[] pages = pagesById.remove(id);
+        if (pages == null) return;
+
+        try {
+            release(pages);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи страничного файла: " + file);
+        }
+    }
+
+    synchronized int[] getIds() {
+        return pagesById.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    synchronized long getPageWrites() {
+        return pageWrites;
+    }
+
+    synchronized void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сброса на диск: " + file);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия файла: " + file);
+        } finally {
+            channel = null;
+        }
+    }
+
+    /*
+     * Сначала свободные страницы с меньшими номерами, затем новые в конце файла.
+     */
+    private int[] allocate(int count) {
+        int[] pages = new int[count];
+        int page = freePages.nextSetBit(1);
+        for (int i = 0; i < count; i++) {
+            if (page >= 0) {
+                pages[i] = page;
+                freePages.clear(page);
+                page = freePages.nextSetBit(page + 1);
+            } else {
+                pages[i] = pageCount++;
+            }
+        }
+        return pages;
+    }
+
+    private void release(int[] pages) throws IOException {
+        channel.write(ByteBuffer.wrap(new byte[]{FREE}), (long) pages[0] * pageSize);
+        pageWrites++;
+        for (int page : pages) {
+            freePages.set(page);
+        }
+    }
+
+    private void writePage(int page, byte kind, int next, byte[] data, int from, int used) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        buffer.put(kind).putInt(next).putShort((short) used).putInt(0).put(data, from, used);
+        buffer.putInt(7, checksum(buffer.array(), 0, used));
+        buffer.rewind();
+        channel.write(buffer, (long) page * pageSize);
+        pageWrites++;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) throw new EOFException();
+            offset += read;
+        }
+    }
+
+    private static int checksum(byte[] data, int offset, int used) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, 7);
+        crc.update(data, offset + PAGE_HEADER_SIZE, used);
+        return (int) crc.getValue();
+    }
+
+    private void scan(Consumer<Task> sink) throws IOException {
+        long size = channel.size();
+        pageCount = (int) Math.max(1, size / pageSize);
+        byte[] data = new byte[(int) ((long) pageCount * pageSize)];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int read;
+        do {
+            read = channel.read(buffer, buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+
+        BitSet valid = new BitSet(pageCount);
+        for (int page = 1; page < pageCount; page++) {
+            int offset = page * pageSize;
+            int used = Short.toUnsignedInt(ByteBuffer.wrap(data, offset + 5, 2).getShort());
+            if (data[offset] != FREE && used <= pageSize - PAGE_HEADER_SIZE
+                    && ByteBuffer.wrap(data, offset + 7, 4).getInt() == checksum(data, offset, used)) {
+                valid.set(page);
+            }
+        }
+
+        Map<Integer, Long> versions = new HashMap<>();
+        Map<Integer, byte[]> records = new HashMap<>();
+        BitSet staleHeads = new BitSet();
+        for (int head = valid.nextSetBit(1); head >= 0; head = valid.nextSetBit(head + 1)) {
+            if (data[head * pageSize] != HEAD) continue;
+            int[] chain = readChain(data, valid, head);
+            byte[] record = chain != null ? join(data, chain) : null;
+            if (record == null || record.length < RECORD_HEADER_SIZE) {
+                staleHeads.set(head);
+                continue;
+            }
+            ByteBuffer recordHeader = ByteBuffer.wrap(record);
+            long version = recordHeader.getLong();
+            int id = recordHeader.getInt();
+            int length = recordHeader.getInt();
+            if (length > record.length - RECORD_HEADER_SIZE) {
+                staleHeads.set(head);
+                continue;
+            }
+            Long knownVersion = versions.get(id);
+            if (knownVersion != null && knownVersion > version) {
+                staleHeads.set(head);
+                continue;
+            }
+            int[] replaced = pagesById.put(id, chain);
+            if (replaced != null) {
+                staleHeads.set(replaced[0]);
+            }
+            versions.put(id, version);
+            records.put(id, record);
+            nextVersion = Math.max(nextVersion, version + 1);
+        }
+
+        freePages.set(1, pageCount);
+        for (int[] pages : pagesById.values()) {
+            for (int page : pages) {
+                freePages.clear(page);
+            }
+        }
+        for (int head = staleHeads.nextSetBit(0); head >= 0; head = staleHeads.nextSetBit(head + 1)) {
+            channel.write(ByteBuffer.wrap(new byte[]{FREE}), (long) head * pageSize);
+        }
+
+        records.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    byte[] record = entry.getValue();
+                    int length = ByteBuffer.wrap(record, 12, 4).getInt();
+                    try {
+                        sink.accept(BinaryTaskFormat.decodeTask(record, RECORD_HEADER_SIZE, length));
+                    } catch (RuntimeException e) {
+                        throw new ManagerLoadException("Повреждённая запись страничного файла '" + file + "': "
+                                + entry.getKey());
+                    }
+                });
+    }
+
+    private int[] readChain(byte[] data, BitSet valid, int head) {
+        int[] chain = new int[4];
+        int length = 0;
+        int page = head;
+        while (page != NO_PAGE) {
+            if (page < 1 || page >= pageCount || !valid.get(page) || length >= pageCount) return null;
+            if (page != head && data[page * pageSize] != CONTINUATION) return null;
+            if (length == chain.length) {
+                chain = Arrays.copyOf(chain, length * 2);
+            }
+            chain[length++] = page;
+            page = ByteBuffer.wrap(data, page * pageSize + 1, 4).getInt();
+        }
+        return Arrays.copyOf(chain, length);
+    }
+
+    private byte[] join(byte[] data, int[] chain) {
+        int total = 0;
+        for (int page : chain) {
+            total += Short.toUnsignedInt(ByteBuffer.wrap(data, page * pageSize + 5, 2).getShort());
+        }
+        byte[] record = new byte[total];
+        int position = 0;
+        for (int page : chain) {
+            int used = Short.toUnsignedInt(ByteBuffer.wrap(data, page * pageSize + 5, 2).getShort());
+            System.arraycopy(data, page * pageSize + PAGE_HEADER_SIZE, record, position, used);
+            position += used;
+        }
+        return record;
+    }
+}
@@ -0,0 +1,107 @@
+package services;
+
+import exceptions.ManagerLoadException;
+import tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/*
+ * Загрузка большого CSV-файла данных: файл отображается в память, делится на куски по границам строк,
+ * куски разбираются параллельно в ForkJoinPool. Задачи отдаются в sink на вызывающем потоке в порядке
+ * файла, так что связывание эпиков, подзадач и истории остаётся однопоточным.
+ */
+final class ParallelCsvLoader {
+    static final long MIN_PARALLEL_BYTES = 1024 * 1024;
+    private static final int MIN_CHUNK_BYTES = 256 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelCsvLoader() {
+    }
+
+    static boolean isWorthLoading(long size) {
+        return size >= MIN_PARALLEL_BYTES && size <= Integer.MAX_VALUE;
+    }
+
+    /*
+     * Разбираются length байт файла с offset, первая строка - заголовок. Строки, которые parser
+     * не распознал как задачу, считаются строкой истории и возвращаются через historyParser.
+     */
+    static List<Integer> load(File file, long offset, long length, Charset charset, Function<String, Task> parser,
+                              Function<String, List<Integer>> historyParser, Consumer<Task> sink) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения файла: " + file);
+        }
+
+        int size = buffer.limit();
+        int start = nextLineStart(buffer, 0, size);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunkCount = (int) Math.max(1, Math.min((size - start) / MIN_CHUNK_BYTES,
+                (long) pool.getParallelism() * CHUNKS_PER_THREAD));
+        List<ForkJoinTask<Chunk>> chunks = new ArrayList<>(chunkCount);
+        for (int i = 1; i <= chunkCount && start < size; i++) {
+            int target = start + (size - start) / (chunkCount - i + 1);
+            int end = i == chunkCount ? size : nextLineStart(buffer, target, size);
+            int chunkStart = start;
+            chunks.add(pool.submit(() -> parse(buffer, chunkStart, end, charset, parser)));
+            start = end;
+        }
+
+        List<Integer> history = new ArrayList<>();
+        for (ForkJoinTask<Chunk> chunk : chunks) {
+            Chunk result = chunk.join();
+            result.tasks().forEach(sink);
+            for (String line : result.historyLines()) {
+                history.addAll(historyParser.apply(line));
+            }
+        }
+        return history;
+    }
+
+    private static int nextLineStart(MappedByteBuffer buffer, int from, int size) {
+        for (int i = from; i < size; i++) {
+            if (buffer.get(i) == '\n') return i + 1;
+        }
+        return size;
+    }
+
+    private static Chunk parse(MappedByteBuffer buffer, int start, int end, Charset charset,
+                               Function<String, Task> parser) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        List<Task> tasks = new ArrayList<>(bytes.length / 64);
+        List<String> historyLines = new ArrayList<>(1);
+        int lineStart = 0;
+        for (int i = 0; i <= bytes.length; i++) {
+            if (i < bytes.length && bytes[i] != '\n') continue;
+            int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+            if (lineEnd > lineStart) {
+                String line = new String(bytes, lineStart, lineEnd - lineStart, charset);
+                Task task = parser.apply(line);
+                if (task != null) {
+                    tasks.add(task);
+                } else {
+                    historyLines.add(line);
+                }
+            }
+            lineStart = i + 1;
+        }
+        return new Chunk(tasks, historyLines);
+    }
+
+    private record Chunk(List<Task> tasks, List<String> historyLines) {
+    }
+}
@@ -0,0 +1,15 @@
+package services;
+
+/*
+ * Строка, отброшенная при массовом восстановлении. otherId - задача, с которой конфликтует
+ * отброшенная (тот же id или пересечение по времени), либо -1. RESTORED_FROM_BACKUP (id = -1) -
+ * файл данных был повреждён и заменён копией .bak, часть последних изменений могла пропасть.
+ */
+public record RestoreConflict(int id, Reason reason, int otherId) {
+    public enum Reason {
+        DUPLICATE_ID,
+        MISSING_EPIC,
+        INTERSECTION,
+        RESTORED_FROM_BACKUP
+    }
+}
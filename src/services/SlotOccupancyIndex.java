@@ -0,0 +1,155 @@
+package services;
+
+import tasks.TimeSlot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class SlotOccupancyIndex {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private final int slotMinutes;
+    private final long slotSeconds;
+    private final int slotsPerDay;
+    private final Map<Long, BitSet> days;
+
+    SlotOccupancyIndex(int slotMinutes) {
+        if (slotMinutes <= 0 || MINUTES_PER_DAY % slotMinutes != 0) {
+            throw new IllegalArgumentException("Размер слота должен делить сутки нацело: " + slotMinutes);
+        }
+        this.slotMinutes = slotMinutes;
+        this.slotSeconds = slotMinutes * 60L;
+        this.slotsPerDay = MINUTES_PER_DAY / slotMinutes;
+        this.days = new HashMap<>();
+    }
+
+    int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    void occupy(TimeSlot timeSlot) {
+        long firstSlot = firstSlot(timeSlot.getStartTime());
+        long lastSlot = lastSlot(timeSlot.getStartTime(), timeSlot.getEndTime());
+        for (long day = dayOf(firstSlot); day <= dayOf(lastSlot - 1); day++) {
+            days.computeIfAbsent(day, d -> new BitSet(slotsPerDay))
+                    .set(fromIndex(day, firstSlot), toIndex(day, lastSlot));
+        }
+    }
+
+    void release(TimeSlot timeSlot) {
+        long firstSlot = firstSlot(timeSlot.getStartTime());
+        long lastSlot = lastSlot(timeSlot.getStartTime(), timeSlot.getEndTime());
+        for (long day = dayOf(firstSlot); day <= dayOf(lastSlot - 1); day++) {
+            BitSet bits = days.get(day);
+            if (bits == null) continue;
+            bits.clear(fromIndex(day, firstSlot), toIndex(day, lastSlot));
+            if (bits.isEmpty()) {
+                days.remove(day);
+            }
+        }
+    }
+
+    void clear() {
+        days.clear();
+    }
+
+    TimeSlot alignToSlots(TimeSlot timeSlot) {
+        long firstSlot = firstSlot(timeSlot.getStartTime());
+        long lastSlot = lastSlot(timeSlot.getStartTime(), timeSlot.getEndTime());
+        return new TimeSlot(timeOf(firstSlot), timeOf(lastSlot));
+    }
+
+    boolean isFree(LocalDateTime startTime, LocalDateTime endTime) {
+        long firstSlot = firstSlot(startTime);
+        long lastSlot = lastSlot(startTime, endTime);
+        for (long day = dayOf(firstSlot); day <= dayOf(lastSlot - 1); day++) {
+            BitSet bits = days.get(day);
+            if (bits == null) continue;
+            int setBit = bits.nextSetBit(fromIndex(day, firstSlot));
+            if (setBit >= 0 && setBit < toIndex(day, lastSlot)) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Свободными считаются только целиком незанятые слоты, поэтому найденные окна
+     * выровнены по границам слотов (с обрезкой по from/to) и гарантированно свободны.
+     */
+    List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration duration) {
+        List<TimeSlot> result = new ArrayList<>();
+        if (!from.isBefore(to)) return result;
+
+        long firstSlot = firstSlot(from);
+        long lastSlot = Math.floorDiv(epochSecond(to) + slotSeconds - 1, slotSeconds);
+        LocalDateTime runStart = null;
+        for (long day = dayOf(firstSlot); day <= dayOf(lastSlot - 1); day++) {
+            int index = fromIndex(day, firstSlot);
+            int toIndex = toIndex(day, lastSlot);
+            BitSet bits = days.get(day);
+            while (index < toIndex) {
+                int setBit = bits != null ? bits.nextSetBit(index) : -1;
+                if (runStart == null) {
+                    runStart = max(from, timeOf(day, index));
+                }
+                if (setBit < 0 || setBit >= toIndex) break;
+
+                addFreeSlot(result, runStart, timeOf(day, setBit), duration);
+                runStart = null;
+                index = bits.nextClearBit(setBit);
+            }
+        }
+        if (runStart != null) {
+            addFreeSlot(result, runStart, to, duration);
+        }
+        return result;
+    }
+
+    static void addFreeSlot(List<TimeSlot> slots, LocalDateTime startTime, LocalDateTime endTime,
+                            Duration duration) {
+        if (startTime.isBefore(endTime) && !startTime.plus(duration).isAfter(endTime)) {
+            slots.add(new TimeSlot(startTime, endTime));
+        }
+    }
+
+    private long firstSlot(LocalDateTime startTime) {
+        return Math.floorDiv(epochSecond(startTime), slotSeconds);
+    }
+
+    private long lastSlot(LocalDateTime startTime, LocalDateTime endTime) {
+        long lastSlot = Math.floorDiv(epochSecond(endTime) + slotSeconds - 1, slotSeconds);
+        return Math.max(lastSlot, firstSlot(startTime) + 1);
+    }
+
+    private long dayOf(long slot) {
+        return Math.floorDiv(slot, slotsPerDay);
+    }
+
+    private int fromIndex(long day, long firstSlot) {
+        return (int) Math.max(firstSlot - day * slotsPerDay, 0);
+    }
+
+    private int toIndex(long day, long lastSlot) {
+        return (int) Math.min(lastSlot - day * slotsPerDay, slotsPerDay);
+    }
+
+    private LocalDateTime timeOf(long slot) {
+        return LocalDateTime.ofEpochSecond(slot * slotSeconds, 0, ZoneOffset.UTC);
+    }
+
+    private LocalDateTime timeOf(long day, int index) {
+        return timeOf(day * slotsPerDay + index);
+    }
+
+    private static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,136 @@
+package services;
+
+import exceptions.ManagerSaveException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Фоновое сжатие журнала. Снимок собирается и журнал ротируется вызывающим под монитором
+ * менеджера, здесь только запись файлов:
+ * 1. снимок с контрольной суммой пишется во временный файл и сбрасывается на диск (fsync);
+ * 2. .compacting переименовывается в .compacted - с этого момента временный файл считается готовым;
+ * 3. временный файл атомарно заменяет файл данных, прежний остаётся в .bak;
+ * 4. .compacted удаляется.
+ * recover() при загрузке доводит до конца прерванное сжатие после шага 2 или откатывает до него.
+ */
+class SnapshotCompactor implements AutoCloseable {
+    private final File dataFile;
+    private final File tempFile;
+    private final TaskJournal journal;
+    private final ExecutorService executor;
+    private volatile CompactionPolicy policy;
+    private volatile CompletableFuture<Void> running;
+    private volatile long baseBytes;
+    private volatile CompactionStats stats;
+
+    SnapshotCompactor(File dataFile, TaskJournal journal) {
+        this.dataFile = dataFile;
+        this.tempFile = AtomicDataFile.tempFileOf(dataFile);
+        this.journal = journal;
+        this.policy = CompactionPolicy.DEFAULT;
+        this.running = CompletableFuture.completedFuture(null);
+        this.stats = CompactionStats.EMPTY;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-backed-compactor-" + dataFile.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void recover() {
+        try {
+            finishInterrupted();
+            Files.deleteIfExists(tempFile.toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка восстановления после сжатия: " + dataFile);
+        }
+        baseBytes = dataFile.length();
+    }
+
+    private void finishInterrupted() throws IOException {
+        if (!journal.getCompactedFile().exists()) return;
+        if (tempFile.exists()) {
+            AtomicDataFile.replace(tempFile, dataFile);
+        }
+        Files.delete(journal.getCompactedFile().toPath());
+    }
+
+    void setPolicy(CompactionPolicy policy) {
+        this.policy = policy;
+    }
+
+    CompactionStats getStats() {
+        return stats;
+    }
+
+    boolean shouldCompact() {
+        return running.isDone() && policy.shouldCompact(journal.size(), baseBytes);
+    }
+
+    /*
+     * Перед вызовом нужно дождаться предыдущего сжатия (awaitIdle) и ротировать журнал;
+     * snapshot соответствует содержимому ротированного журнала.
+     */
+    void start(byte[] snapshot) {
+        long rotatedBytes = journal.getCompactingFile().length();
+        running = CompletableFuture.runAsync(() -> compact(snapshot, rotatedBytes), executor);
+    }
+
+    /*
+     * Ошибка предыдущего сжатия уже учтена в статистике, а его файлы подберёт следующее сжатие.
+     */
+    void awaitIdle() {
+        running.handle((result, error) -> null).join();
+    }
+
+    void await() {
+        try {
+            running.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof ManagerSaveException saveException ? saveException
+                    : new ManagerSaveException("Ошибка сжатия журнала: " + cause.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        awaitIdle();
+        executor.shutdown();
+    }
+
+    private void compact(byte[] snapshot, long rotatedBytes) {
+        long startedAt = System.nanoTime();
+        long bytesBefore = baseBytes + rotatedBytes;
+        try {
+            finishInterrupted();
+        } catch (IOException e) {
+            stats = stats.withFailure();
+            throw new ManagerSaveException("Ошибка восстановления после сжатия: " + dataFile);
+        }
+        try {
+            AtomicDataFile.writeTemp(tempFile, snapshot, true);
+            Files.move(journal.getCompactingFile().toPath(), journal.getCompactedFile().toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            AtomicDataFile.replace(tempFile, dataFile);
+            Files.delete(journal.getCompactedFile().toPath());
+        } catch (IOException e) {
+            stats = stats.withFailure();
+            throw new ManagerSaveException("Ошибка замены файла данных: " + dataFile);
+        } catch (ManagerSaveException e) {
+            stats = stats.withFailure();
+            throw e;
+        }
+        baseBytes = dataFile.length();
+        stats = stats.withCompaction(Duration.ofNanos(System.nanoTime() - startedAt),
+                Math.max(0, bytesBefore - baseBytes));
+    }
+}
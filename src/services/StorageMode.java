@@ -0,0 +1,7 @@
+package services;
+
+public enum StorageMode {
+    SNAPSHOT,
+    JOURNAL,
+    PAGED
+}
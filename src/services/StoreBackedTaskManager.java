@@ -0,0 +1,161 @@
+package services;
+
+import tasks.AtomicIdGenerator;
+import tasks.Epic;
+import tasks.IdGenerator;
+import tasks.Subtask;
+import tasks.Task;
+import tasks.Type;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/*
+ * Менеджер поверх подключаемого хранилища (TaskStore). Данные живут в памяти, после каждой операции,
+ * которая что-то изменила, хранилищу уходит одна транзакция: затронутые записи, которые ещё существуют, -
+ * на запись, остальные - на удаление (если хранилище их знает). Вложенные вызовы (removeEpic вызывает
+ * clearEpicSubtasks) копят id в транзакцию внешнего. Создаётся через loadFromStore.
+ */
+public final class StoreBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
+    private final TaskStore store;
+    private List<RestoreConflict> loadConflicts = List.of();
+    private Set<Integer> touched;
+
+    private StoreBackedTaskManager(HistoryManager historyManager, IdGenerator idGenerator, TaskStore store) {
+        super(historyManager, idGenerator);
+        this.store = store;
+    }
+
+    public static StoreBackedTaskManager loadFromStore(TaskStore store) {
+        return loadFromStore(store, new AtomicIdGenerator());
+    }
+
+    public static StoreBackedTaskManager loadFromStore(TaskStore store, IdGenerator idGenerator) {
+        StoreBackedTaskManager manager = new StoreBackedTaskManager(Managers.getDefaultHistoryManager(),
+                idGenerator, store);
+        manager.load();
+        return manager;
+    }
+
+    private void load() {
+        List<Task> tasks = new ArrayList<>();
+        List<Integer> savedHistory = store.load(tasks::add);
+        loadConflicts = restore(tasks);
+        for (int id : savedHistory) {
+            Task task = findAnyTask(id);
+            if (task != null) {
+                historyManager.add(task);
+            }
+        }
+    }
+
+    public List<RestoreConflict> getLoadConflicts() {
+        return loadConflicts;
+    }
+
+    public TaskStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    @Override
+    synchronized <T> T applyChange(TaskChange change, Supplier<T> action) {
+        if (change.kind() == TaskChange.Kind.VIEW) {
+            T task = action.get();
+            if (task != null) {
+                store.recordView(change.id(), () -> getHistory().stream().map(Task::getId).toList());
+            }
+            return task;
+        }
+        if (touched != null) {
+            touched.addAll(affectedIds(change));
+            return action.get();
+        }
+        touched = new LinkedHashSet<>(affectedIds(change));
+        try {
+            long version = getVersion();
+            T result = action.get();
+            if (getVersion() != version) {
+                commit();
+            }
+            return result;
+        } finally {
+            touched = null;
+        }
+    }
+
+    private void commit() {
+        TaskStore.Transaction transaction = new TaskStore.Transaction();
+        for (int id : touched) {
+            Task task = findAnyTask(id);
+            if (task != null) {
+                transaction.put(task);
+            } else if (store.find(id) != null) {
+                transaction.delete(id);
+            }
+        }
+        if (!transaction.isEmpty()) {
+            store.commit(transaction);
+        }
+    }
+
+    /*
+     * Записи, которые операция может изменить, по состоянию до неё.
+     */
+    private List<Integer> affectedIds(TaskChange change) {
+        List<Integer> ids = new ArrayList<>();
+        switch (change.kind()) {
+            case ADD, UPDATE -> {
+                ids.add(change.id());
+                if (change.task() instanceof Subtask subtask) {
+                    ids.add(subtask.getEpicId());
+                    Subtask stored = findSubtask(subtask.getId());
+                    if (stored != null) {
+                        ids.add(stored.getEpicId());
+                    }
+                }
+            }
+            case REMOVE -> {
+                ids.add(change.id());
+                if (change.type() == Type.EPIC) {
+                    addSubtaskIds(change.id(), ids);
+                } else if (change.type() == Type.SUBTASK) {
+                    Subtask subtask = findSubtask(change.id());
+                    if (subtask != null) {
+                        ids.add(subtask.getEpicId());
+                    }
+                }
+            }
+            case CLEAR_SUBTASKS -> {
+                ids.add(change.id());
+                addSubtaskIds(change.id(), ids);
+            }
+            case CLEAR -> {
+                if (change.type() != Type.TASK) {
+                    ids.addAll(getEpicsView().keySet());
+                    ids.addAll(getSubtasksView().keySet());
+                }
+                if (change.type() == null || change.type() == Type.TASK) {
+                    ids.addAll(getTasksView().keySet());
+                }
+            }
+            case VIEW -> {
+            }
+        }
+        return ids;
+    }
+
+    private void addSubtaskIds(int epicId, List<Integer> ids) {
+        Epic epic = findEpic(epicId);
+        if (epic != null) {
+            epic.getSubtaskIds().forEach(ids::add);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package services;
+
+import tasks.Task;
+
+import java.util.List;
+
+class SynchronizedHistoryManager implements HistoryManager {
+    private final HistoryManager historyManager;
+
+    SynchronizedHistoryManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    @Override
+    public synchronized void add(Task task) {
+        historyManager.add(task);
+    }
+
+    @Override
+    public synchronized void remove(int id) {
+        historyManager.remove(id);
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+}
@@ -0,0 +1,326 @@
+package services;
+
+import tasks.Epic;
+import tasks.IdGenerator;
+import tasks.Subtask;
+import tasks.Task;
+import tasks.TimeSlot;
+import tasks.Type;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/*
+ * Обёртка для менеджеров, не рассчитанных на несколько потоков. Чтения идут параллельно под блокировкой
+ * чтения, изменения и просмотры (getEpic/getSubtask/getTask пишут в историю) - под блокировкой записи.
+ * Задачи и коллекции отдаются копиями, снятыми под блокировкой: менеджер меняет эпик на месте, и
+ * сериализация живого объекта вне блокировки увидела бы его наполовину обновлённым.
+ */
+class SynchronizedTaskManager implements TaskManager {
+    private final TaskManager taskManager;
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    SynchronizedTaskManager(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    private <T> T read(Supplier<T> action) {
+        readLock.lock();
+        try {
+            return action.get();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        write(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Task> T copyOf(T task) {
+        if (task == null) return null;
+        if (task instanceof Epic epic) return (T) Epic.copyOf(epic);
+        if (task instanceof Subtask subtask) return (T) Subtask.cloneWithId(subtask, subtask.getId());
+        return (T) Task.cloneWithId(task, task.getId());
+    }
+
+    private static <T extends Task> Map<Integer, T> copyOf(Map<Integer, T> tasks) {
+        Map<Integer, T> copy = new LinkedHashMap<>();
+        tasks.forEach((id, task) -> copy.put(id, copyOf(task)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static <T extends Task> List<T> copyOf(List<T> tasks) {
+        return tasks.stream().map(SynchronizedTaskManager::copyOf).toList();
+    }
+
+    @Override
+    public Map<Integer, Epic> getEpics() {
+        return read(() -> copyOf(taskManager.getEpics()));
+    }
+
+    @Override
+    public Map<Integer, Epic> getEpicsView() {
+        return read(() -> copyOf(taskManager.getEpicsView()));
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        return read(() -> copyOf(taskManager.getEpics(afterId, limit)));
+    }
+
+    @Override
+    public int getEpicsCount() {
+        return read(taskManager::getEpicsCount);
+    }
+
+    @Override
+    public boolean containsEpic(int id) {
+        return read(() -> taskManager.containsEpic(id));
+    }
+
+    @Override
+    public Epic findEpic(int id) {
+        return read(() -> copyOf(taskManager.findEpic(id)));
+    }
+
+    @Override
+    public int addEpic(Epic epic) {
+        return write(() -> taskManager.addEpic(epic));
+    }
+
+    @Override
+    public Epic getEpic(int id) {
+        return write(() -> copyOf(taskManager.getEpic(id)));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        write(() -> taskManager.updateEpic(epic));
+    }
+
+    @Override
+    public void removeEpic(int id) {
+        write(() -> taskManager.removeEpic(id));
+    }
+
+    @Override
+    public void clearEpics() {
+        write(taskManager::clearEpics);
+    }
+
+    @Override
+    public Map<Integer, Subtask> getEpicSubtasks(int epicId) {
+        return read(() -> copyOf(taskManager.getEpicSubtasks(epicId)));
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(int epicId, int afterId, int limit) {
+        return read(() -> copyOf(taskManager.getEpicSubtasks(epicId, afterId, limit)));
+    }
+
+    @Override
+    public Map<Integer, Subtask> getSubtasks() {
+        return read(() -> copyOf(taskManager.getSubtasks()));
+    }
+
+    @Override
+    public Map<Integer, Subtask> getSubtasksView() {
+        return read(() -> copyOf(taskManager.getSubtasksView()));
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        return read(() -> copyOf(taskManager.getSubtasks(afterId, limit)));
+    }
+
+    @Override
+    public int getSubtasksCount() {
+        return read(taskManager::getSubtasksCount);
+    }
+
+    @Override
+    public boolean containsSubtask(int id) {
+        return read(() -> taskManager.containsSubtask(id));
+    }
+
+    @Override
+    public Subtask findSubtask(int id) {
+        return read(() -> copyOf(taskManager.findSubtask(id)));
+    }
+
+    @Override
+    public int addSubtask(Subtask subtask) {
+        return write(() -> taskManager.addSubtask(subtask));
+    }
+
+    @Override
+    public Subtask getSubtask(int id) {
+        return write(() -> copyOf(taskManager.getSubtask(id)));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        write(() -> taskManager.updateSubtask(subtask));
+    }
+
+    @Override
+    public void removeSubtask(int id) {
+        write(() -> taskManager.removeSubtask(id));
+    }
+
+    @Override
+    public void clearEpicSubtasks(int id) {
+        write(() -> taskManager.clearEpicSubtasks(id));
+    }
+
+    @Override
+    public void clearSubtasks() {
+        write(taskManager::clearSubtasks);
+    }
+
+    @Override
+    public Map<Integer, Task> getTasks() {
+        return read(() -> copyOf(taskManager.getTasks()));
+    }
+
+    @Override
+    public Map<Integer, Task> getTasksView() {
+        return read(() -> copyOf(taskManager.getTasksView()));
+    }
+
+    @Override
+    public List<Task> getTasks(int afterId, int limit) {
+        return read(() -> copyOf(taskManager.getTasks(afterId, limit)));
+    }
+
+    @Override
+    public int getTasksCount() {
+        return read(taskManager::getTasksCount);
+    }
+
+    @Override
+    public boolean containsTask(int id) {
+        return read(() -> taskManager.containsTask(id));
+    }
+
+    @Override
+    public Task findTask(int id) {
+        return read(() -> copyOf(taskManager.findTask(id)));
+    }
+
+    @Override
+    public int addTask(Task task) {
+        return write(() -> taskManager.addTask(task));
+    }
+
+    @Override
+    public Task getTask(int id) {
+        return write(() -> copyOf(taskManager.getTask(id)));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        write(() -> taskManager.updateTask(task));
+    }
+
+    @Override
+    public void removeTask(int id) {
+        write(() -> taskManager.removeTask(id));
+    }
+
+    @Override
+    public void clearTasks() {
+        write(taskManager::clearTasks);
+    }
+
+    @Override
+    public void clearAllData() {
+        write(taskManager::clearAllData);
+    }
+
+    @Override
+    public Type getTaskType(int id) {
+        return read(() -> taskManager.getTaskType(id));
+    }
+
+    @Override
+    public long getVersion() {
+        return taskManager.getVersion();
+    }
+
+    @Override
+    public long getVersion(Type type) {
+        return taskManager.getVersion(type);
+    }
+
+    @Override
+    public long getHistoryVersion() {
+        return taskManager.getHistoryVersion();
+    }
+
+    @Override
+    public IdGenerator getIdGenerator() {
+        return taskManager.getIdGenerator();
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return read(() -> copyOf(taskManager.getHistory()));
+    }
+
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        return read(() -> {
+            Set<Task> copy = new LinkedHashSet<>();
+            taskManager.getPrioritizedTasks().forEach(task -> copy.add(copyOf(task)));
+            return Collections.unmodifiableSet(copy);
+        });
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit, LocalDateTime cursor) {
+        return read(() -> copyOf(taskManager.getPrioritizedTasks(from, to, limit, cursor)));
+    }
+
+    @Override
+    public boolean isIntersectedTask(Task task) {
+        return read(() -> taskManager.isIntersectedTask(task));
+    }
+
+    @Override
+    public int scheduleEarliest(Task task, LocalDateTime notBefore) {
+        return write(() -> taskManager.scheduleEarliest(task, notBefore));
+    }
+
+    @Override
+    public List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration duration) {
+        return read(() -> taskManager.findFreeSlots(from, to, duration));
+    }
+}
@@ -0,0 +1,44 @@
+package services;
+
+import tasks.Task;
+import tasks.Type;
+
+/*
+ * Описание операции менеджера для InMemoryTaskManager.applyChange. task - добавляемая или обновляемая
+ * задача, type и id - удаляемая запись, очищаемая коллекция (type = null - все данные) или эпик,
+ * подзадачи которого очищаются.
+ */
+record TaskChange(Kind kind, Type type, int id, Task task) {
+    enum Kind {
+        ADD,
+        UPDATE,
+        REMOVE,
+        CLEAR,
+        CLEAR_SUBTASKS,
+        VIEW
+    }
+
+    static TaskChange add(Task task) {
+        return new TaskChange(Kind.ADD, null, task.getId(), task);
+    }
+
+    static TaskChange update(Task task) {
+        return new TaskChange(Kind.UPDATE, null, task.getId(), task);
+    }
+
+    static TaskChange remove(Type type, int id) {
+        return new TaskChange(Kind.REMOVE, type, id, null);
+    }
+
+    static TaskChange clear(Type type) {
+        return new TaskChange(Kind.CLEAR, type, -1, null);
+    }
+
+    static TaskChange clearSubtasks(int epicId) {
+        return new TaskChange(Kind.CLEAR_SUBTASKS, Type.EPIC, epicId, null);
+    }
+
+    static TaskChange view(Type type, int id) {
+        return new TaskChange(Kind.VIEW, type, id, null);
+    }
+}
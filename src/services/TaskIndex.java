@@ -0,0 +1,488 @@
+package services;
+
+import tasks.Task;
+import tasks.Type;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * Общий индекс id -> задача для задач, эпиков и подзадач: открытая адресация с линейным
+ * пробированием по примитивным int-ключам, рядом с ссылкой хранится тег типа.
+ * Для постраничного чтения по каждому типу ведётся отсортированный список id (OrderedIds). Id принадлежит одному
+ * типу: запись под тем же id через представление другого типа отклоняется.
+ * В конкурентном режиме чтение оптимистичное (StampedLock), запись под эксклюзивной блокировкой.
+ */
+class TaskIndex {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final byte EMPTY = 0;
+    private static final Type[] TYPES = Type.values();
+    private final StampedLock lock;
+    private final int[] counts;
+    private final OrderedIds[] orderedIds;
+    private Table table;
+    private int size;
+    private int modCount;
+
+    TaskIndex(boolean concurrent) {
+        lock = concurrent ? new StampedLock() : null;
+        counts = new int[TYPES.length];
+        orderedIds = new OrderedIds[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            orderedIds[i] = new OrderedIds();
+        }
+        table = new Table(DEFAULT_CAPACITY);
+    }
+
+    private static byte tagOf(Type type) {
+        return (byte) (type.ordinal() + 1);
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    Type getType(int id) {
+        if (lock == null) return typeOf(table, id);
+
+        long stamp = lock.tryOptimisticRead();
+        Type type = typeOf(table, id);
+        if (lock.validate(stamp)) return type;
+
+        stamp = lock.readLock();
+        try {
+            return typeOf(table, id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    Task get(int id, Type type) {
+        if (lock == null) return find(table, id, type);
+
+        long stamp = lock.tryOptimisticRead();
+        Task task = find(table, id, type);
+        if (lock.validate(stamp)) return task;
+
+        stamp = lock.readLock();
+        try {
+            return find(table, id, type);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean contains(int id) {
+        return getType(id) != null;
+    }
+
+    int size(Type type) {
+        return counts[type.ordinal()];
+    }
+
+    Task put(Type type, Task task) {
+        long stamp = lock != null ? lock.writeLock() : 0;
+        try {
+            return insert(type, task);
+        } finally {
+            if (lock != null) {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    Task remove(int id, Type type) {
+        long stamp = lock != null ? lock.writeLock() : 0;
+        try {
+            int slot = slotOf(table, id);
+            if (slot < 0 || table.tags[slot] != tagOf(type)) return null;
+            return delete(slot);
+        } finally {
+            if (lock != null) {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    void clear(Type type) {
+        long stamp = lock != null ? lock.writeLock() : 0;
+        try {
+            if (counts[type.ordinal()] == 0) return;
+
+            Table oldTable = table;
+            table = new Table(oldTable.keys.length);
+            size = 0;
+            counts[type.ordinal()] = 0;
+            orderedIds[type.ordinal()].clear();
+            byte clearedTag = tagOf(type);
+            for (int i = 0; i < oldTable.keys.length; i++) {
+                byte tag = oldTable.tags[i];
+                if (tag != EMPTY && tag != clearedTag) {
+                    place(table, oldTable.keys[i], tag, oldTable.values[i]);
+                    size++;
+                }
+            }
+            modCount++;
+        } finally {
+            if (lock != null) {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /*
+     * До limit задач типа type с id больше afterId по возрастанию id; limit <= 0 - все.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Task> List<T> page(Type type, int afterId, int limit) {
+        long stamp = lock != null ? lock.readLock() : 0;
+        try {
+            OrderedIds ids = orderedIds[type.ordinal()];
+            int count = counts[type.ordinal()];
+            List<T> page = new ArrayList<>(limit > 0 ? Math.min(limit, count) : count);
+            for (int i = ids.nextLive(ids.indexAfter(afterId)); i >= 0 && (limit <= 0 || page.size() < limit);
+                 i = ids.nextLive(i + 1)) {
+                page.add((T) find(table, ids.get(i), type));
+            }
+            return page;
+        } finally {
+            if (lock != null) {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends Task> Map<Integer, T> view(Type type) {
+        return (Map<Integer, T>) new TypedView(type);
+    }
+
+    private static Type typeOf(Table table, int id) {
+        int slot = slotOf(table, id);
+        if (slot < 0) return null;
+        byte tag = table.tags[slot];
+        return tag == EMPTY ? null : TYPES[tag - 1];
+    }
+
+    private static Task find(Table table, int id, Type type) {
+        int slot = slotOf(table, id);
+        if (slot < 0 || table.tags[slot] != tagOf(type)) return null;
+        return table.values[slot];
+    }
+
+    private static int slotOf(Table table, int id) {
+        int mask = table.keys.length - 1;
+        int slot = hash(id) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            if (table.tags[slot] == EMPTY) return -1;
+            if (table.keys[slot] == id) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int place(Table table, int id, byte tag, Task task) {
+        int mask = table.keys.length - 1;
+        int slot = hash(id) & mask;
+        while (table.tags[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table.values[slot] = task;
+        table.keys[slot] = id;
+        table.tags[slot] = tag;
+        return slot;
+    }
+
+    private Task insert(Type type, Task task) {
+        int id = task.getId();
+        byte tag = tagOf(type);
+        int slot = slotOf(table, id);
+        if (slot >= 0) {
+            if (table.tags[slot] != tag) {
+                throw new IllegalArgumentException("Id " + id + " уже занят: " + TYPES[table.tags[slot] - 1]);
+            }
+            Task previous = table.values[slot];
+            table.values[slot] = task;
+            return previous;
+        }
+
+        if ((size + 1) * 2 > table.keys.length) {
+            resize(table.keys.length * 2);
+        }
+        place(table, id, tag, task);
+        size++;
+        counts[type.ordinal()]++;
+        orderedIds[type.ordinal()].add(id);
+        modCount++;
+        return null;
+    }
+
+    private Task delete(int slot) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        Task removed = t.values[slot];
+        counts[t.tags[slot] - 1]--;
+        orderedIds[t.tags[slot] - 1].remove(t.keys[slot]);
+        size--;
+        modCount++;
+
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (t.tags[next] == EMPTY) break;
+
+            int home = hash(t.keys[next]) & mask;
+            boolean staysInPlace = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!staysInPlace) {
+                t.keys[hole] = t.keys[next];
+                t.values[hole] = t.values[next];
+                t.tags[hole] = t.tags[next];
+                hole = next;
+            }
+        }
+        t.tags[hole] = EMPTY;
+        t.values[hole] = null;
+        t.keys[hole] = 0;
+        return removed;
+    }
+
+    private void resize(int capacity) {
+        Table oldTable = table;
+        Table newTable = new Table(capacity);
+        for (int i = 0; i < oldTable.keys.length; i++) {
+            if (oldTable.tags[i] != EMPTY) {
+                place(newTable, oldTable.keys[i], oldTable.tags[i], oldTable.values[i]);
+            }
+        }
+        table = newTable;
+    }
+
+    private List<Map.Entry<Integer, Task>> snapshot(Type type) {
+        long stamp = lock.readLock();
+        try {
+            List<Map.Entry<Integer, Task>> entries = new ArrayList<>(counts[type.ordinal()]);
+            Table t = table;
+            byte tag = tagOf(type);
+            for (int i = 0; i < t.keys.length; i++) {
+                if (t.tags[i] == tag) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(t.keys[i], t.values[i]));
+                }
+            }
+            return entries;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static final class Table {
+        private final int[] keys;
+        private final byte[] tags;
+        private final Task[] values;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            tags = new byte[capacity];
+            values = new Task[capacity];
+        }
+    }
+
+    private final class TypedView extends AbstractMap<Integer, Task> {
+        private final Type type;
+
+        TypedView(Type type) {
+            this.type = type;
+        }
+
+        @Override
+        public int size() {
+            return TaskIndex.this.size(type);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer id && TaskIndex.this.get(id, type) != null;
+        }
+
+        @Override
+        public Task get(Object key) {
+            return key instanceof Integer id ? TaskIndex.this.get(id, type) : null;
+        }
+
+        @Override
+        public Task put(Integer key, Task value) {
+            if (key != value.getId()) {
+                throw new IllegalArgumentException("Ключ не совпадает с id задачи: " + key);
+            }
+            return TaskIndex.this.put(type, value);
+        }
+
+        @Override
+        public Task remove(Object key) {
+            return key instanceof Integer id ? TaskIndex.this.remove(id, type) : null;
+        }
+
+        @Override
+        public void clear() {
+            TaskIndex.this.clear(type);
+        }
+
+        @Override
+        public Set<Entry<Integer, Task>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Integer, Task>> iterator() {
+                    return lock != null ? snapshot(type).iterator() : new TableIterator(type);
+                }
+
+                @Override
+                public int size() {
+                    return TypedView.this.size();
+                }
+            };
+        }
+    }
+
+    private final class TableIterator implements Iterator<Map.Entry<Integer, Task>> {
+        private final Table iteratedTable;
+        private final byte tag;
+        private final int expectedModCount;
+        private int slot;
+
+        TableIterator(Type type) {
+            iteratedTable = table;
+            tag = tagOf(type);
+            expectedModCount = modCount;
+            slot = advance(0);
+        }
+
+        private int advance(int from) {
+            int i = from;
+            while (i < iteratedTable.keys.length && iteratedTable.tags[i] != tag) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < iteratedTable.keys.length;
+        }
+
+        @Override
+        public Map.Entry<Integer, Task> next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+
+            Map.Entry<Integer, Task> entry = new AbstractMap.SimpleImmutableEntry<>(iteratedTable.keys[slot],
+                    iteratedTable.values[slot]);
+            slot = advance(slot + 1);
+            return entry;
+        }
+    }
+
+    /*
+     * Отсортированные id одного типа. Удаление только помечает позицию (O(log n)); помеченные позиции
+     * вычищаются одним проходом, когда их становится больше половины, так что сдвигов на удаление
+     * приходится амортизированно O(1), а массив после чистки сжимается. Id больше последнего
+     * дописывается в конец, вставка в середину сначала вычищает пометки.
+     */
+    private static final class OrderedIds {
+        private final BitSet removed = new BitSet();
+        private int[] ids = new int[0];
+        private int length;
+        private int removedCount;
+
+        void add(int id) {
+            if (length == 0 || id > ids[length - 1]) {
+                grow();
+                ids[length++] = id;
+                return;
+            }
+            int index = Arrays.binarySearch(ids, 0, length, id);
+            if (index >= 0) {
+                if (removed.get(index)) {
+                    removed.clear(index);
+                    removedCount--;
+                }
+                return;
+            }
+            compact();
+            grow();
+            index = -Arrays.binarySearch(ids, 0, length, id) - 1;
+            System.arraycopy(ids, index, ids, index + 1, length - index);
+            ids[index] = id;
+            length++;
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, length, id);
+            if (index < 0 || removed.get(index)) return;
+
+            removed.set(index);
+            removedCount++;
+            if (removedCount * 2 > length) {
+                compact();
+            }
+        }
+
+        void clear() {
+            ids = new int[0];
+            length = 0;
+            removed.clear();
+            removedCount = 0;
+        }
+
+        /*
+         * Позиция первого id больше value, включая помеченные.
+         */
+        int indexAfter(int value) {
+            int index = Arrays.binarySearch(ids, 0, length, value);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        /*
+         * Первая непомеченная позиция начиная с index или -1.
+         */
+        int nextLive(int index) {
+            int live = removed.nextClearBit(index);
+            return live < length ? live : -1;
+        }
+
+        int get(int index) {
+            return ids[index];
+        }
+
+        private void grow() {
+            if (length == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(DEFAULT_CAPACITY, length + (length >> 1)));
+            }
+        }
+
+        private void compact() {
+            if (removedCount == 0) return;
+
+            int live = length - removedCount;
+            int[] compacted = new int[Math.max(DEFAULT_CAPACITY, live + (live >> 1))];
+            int count = 0;
+            for (int i = nextLive(0); i >= 0; i = nextLive(i + 1)) {
+                compacted[count++] = ids[i];
+            }
+            ids = compacted;
+            length = count;
+            removed.clear();
+            removedCount = 0;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package services;
+
+import exceptions.ManagerLoadException;
+import exceptions.ManagerSaveException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Журнал изменений рядом с файлом данных: одна строка "ОПЕРАЦИЯ,данные" на изменение.
+ * Строка без завершающего перевода строки считается оборванной записью и при чтении пропускается.
+ * При сжатии журнал переименовывается в .compacting, а новые записи идут в новый пустой журнал;
+ * при чтении сначала читается .compacting, затем текущий журнал.
+ */
+class TaskJournal implements AutoCloseable {
+    static final String FILE_SUFFIX = ".journal";
+    static final String COMPACTING_SUFFIX = ".compacting";
+    static final String COMPACTED_SUFFIX = ".compacted";
+    private final File file;
+    private final File compactingFile;
+    private final File compactedFile;
+    private final Charset charset;
+    private final String delimiter;
+    private FileOutputStream stream;
+    private Writer writer;
+    private long size;
+
+    TaskJournal(File dataFile, Charset charset, String delimiter) {
+        this.file = new File(dataFile.getPath() + FILE_SUFFIX);
+        this.compactingFile = new File(file.getPath() + COMPACTING_SUFFIX);
+        this.compactedFile = new File(file.getPath() + COMPACTED_SUFFIX);
+        this.charset = charset;
+        this.delimiter = delimiter;
+        this.size = file.length();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    File getCompactingFile() {
+        return compactingFile;
+    }
+
+    File getCompactedFile() {
+        return compactedFile;
+    }
+
+    long size() {
+        return size;
+    }
+
+    boolean hasData() {
+        return file.length() > 0 || compactingFile.exists();
+    }
+
+    static String format(Operation operation, String payload, String delimiter) {
+        return operation + delimiter + payload + "\n";
+    }
+
+    void append(Operation operation, String payload) {
+        appendAll(List.of(format(operation, payload, delimiter)));
+    }
+
+    void appendAll(List<String> lines) {
+        try {
+            if (writer == null) {
+                stream = new FileOutputStream(file, true);
+                writer = new BufferedWriter(new OutputStreamWriter(stream, charset));
+            }
+            for (String line : lines) {
+                writer.write(line);
+                size += line.getBytes(charset).length;
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи в журнал: " + file);
+        }
+    }
+
+    void sync() {
+        if (writer == null) return;
+        try {
+            writer.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи в журнал: " + file);
+        }
+    }
+
+    /*
+     * Переносит текущий журнал в .compacting и возвращает размер перенесённого. Если .compacting
+     * остался от неудавшегося сжатия, журнал дописывается в его конец без оборванных строк.
+     */
+    long rotate() {
+        close();
+        try {
+            if (!compactingFile.exists()) {
+                if (!file.exists()) {
+                    Files.createFile(file.toPath());
+                }
+                Files.move(file.toPath(), compactingFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } else if (file.exists()) {
+                trimTornTail(compactingFile);
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                Files.write(compactingFile.toPath(), Arrays.copyOf(bytes, completeLinesLength(bytes)),
+                        StandardOpenOption.APPEND);
+                Files.delete(file.toPath());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка ротации журнала: " + file);
+        }
+        size = 0;
+        return compactingFile.length();
+    }
+
+    private static void trimTornTail(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            long length = channel.size();
+            while (length > 0) {
+                buffer.clear();
+                channel.read(buffer, length - 1);
+                if (buffer.get(0) == '\n') break;
+                length--;
+            }
+            channel.truncate(length);
+        }
+    }
+
+    private static int completeLinesLength(byte[] bytes) {
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n') {
+            length--;
+        }
+        return length;
+    }
+
+    List<Record> read() {
+        List<Record> records = new ArrayList<>();
+        read(compactingFile, records);
+        read(file, records);
+        return records;
+    }
+
+    private void read(File file, List<Record> records) {
+        if (!file.exists()) return;
+
+        String content;
+        try {
+            content = Files.readString(file.toPath(), charset);
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения журнала: " + file);
+        }
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = content.indexOf('\n', lineStart)) >= 0) {
+            String line = content.substring(lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+            if (line.isEmpty()) continue;
+
+            int delimiterIndex = line.indexOf(delimiter);
+            try {
+                Operation operation = Operation.valueOf(delimiterIndex >= 0 ? line.substring(0, delimiterIndex) : line);
+                String payload = delimiterIndex >= 0 ? line.substring(delimiterIndex + delimiter.length()) : "";
+                records.add(new Record(operation, payload));
+            } catch (IllegalArgumentException e) {
+                throw new ManagerLoadException("Повреждённая запись журнала '" + file + "': " + line);
+            }
+        }
+    }
+
+    void truncate() {
+        close();
+        try {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(compactingFile.toPath());
+            Files.deleteIfExists(compactedFile.toPath());
+            size = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка очистки журнала: " + file);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия журнала: " + file);
+        } finally {
+            writer = null;
+            stream = null;
+        }
+    }
+
+    enum Operation {
+        ADD,
+        UPDATE,
+        REMOVE,
+        CLEAR,
+        CLEAR_SUBTASKS
+    }
+
+    record Record(Operation operation, String payload) {
+    }
+}
@@ -1,9 +1,14 @@
 package services;
 
 import tasks.Epic;
+import tasks.IdGenerator;
 import tasks.Subtask;
 import tasks.Task;
+import tasks.TimeSlot;
+import tasks.Type;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -12,6 +17,16 @@ public interface TaskManager {
 
     Map<Integer, Epic> getEpics();
 
+    Map<Integer, Epic> getEpicsView();
+
+    List<Epic> getEpics(int afterId, int limit);
+
+    int getEpicsCount();
+
+    boolean containsEpic(int id);
+
+    Epic findEpic(int id);
+
     int addEpic(Epic epic);
 
     Epic getEpic(int id);
@@ -24,8 +39,23 @@ public interface TaskManager {
 
     Map<Integer, Subtask> getEpicSubtasks(int epicId);
 
+    /*
+     * Страница по возрастанию id: до limit записей с id больше afterId, limit <= 0 - все.
+     */
+    List<Subtask> getEpicSubtasks(int epicId, int afterId, int limit);
+
     Map<Integer, Subtask> getSubtasks();
 
+    Map<Integer, Subtask> getSubtasksView();
+
+    List<Subtask> getSubtasks(int afterId, int limit);
+
+    int getSubtasksCount();
+
+    boolean containsSubtask(int id);
+
+    Subtask findSubtask(int id);
+
     int addSubtask(Subtask subtask);
 
     Subtask getSubtask(int id);
@@ -40,6 +70,16 @@ public interface TaskManager {
 
     Map<Integer, Task> getTasks();
 
+    Map<Integer, Task> getTasksView();
+
+    List<Task> getTasks(int afterId, int limit);
+
+    int getTasksCount();
+
+    boolean containsTask(int id);
+
+    Task findTask(int id);
+
     int addTask(Task task);
 
     Task getTask(int id);
@@ -52,9 +92,29 @@ public interface TaskManager {
 
     void clearAllData();
 
+    Type getTaskType(int id);
+
+    /*
+     * Счётчики изменений для условных запросов: getVersion() растёт при любом изменении данных,
+     * getVersion(type) - при изменении коллекции type, getHistoryVersion() - при изменении истории.
+     */
+    long getVersion();
+
+    long getVersion(Type type);
+
+    long getHistoryVersion();
+
+    IdGenerator getIdGenerator();
+
     List<Task> getHistory();
 
     Set<Task> getPrioritizedTasks();
 
+    List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit, LocalDateTime cursor);
+
     boolean isIntersectedTask(Task task);
+
+    int scheduleEarliest(Task task, LocalDateTime notBefore);
+
+    List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration duration);
 }
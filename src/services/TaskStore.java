@@ -0,0 +1,69 @@
+package services;
+
+import tasks.Task;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Хранилище задач для StoreBackedTaskManager. Менеджер держит данные в памяти и после каждого
+ * изменения передаёт хранилищу одну транзакцию с изменёнными и удалёнными записями; как их хранить
+ * (целым файлом, постранично, в базе), решает реализация.
+ */
+public interface TaskStore extends AutoCloseable {
+
+    /*
+     * Отдаёт в sink все сохранённые задачи и возвращает историю просмотров.
+     */
+    List<Integer> load(Consumer<Task> sink);
+
+    Task find(int id);
+
+    /*
+     * Применяет транзакцию целиком: после сбоя видны либо все её изменения, либо ни одного.
+     */
+    void commit(Transaction transaction);
+
+    /*
+     * history вызывается, только если хранилищу нужна вся история (например, чтобы переписать файл).
+     */
+    void recordView(int id, Supplier<List<Integer>> history);
+
+    @Override
+    void close();
+
+    final class Transaction {
+        private final Map<Integer, Task> puts = new LinkedHashMap<>();
+        private final Set<Integer> deletes = new LinkedHashSet<>();
+
+        public Transaction put(Task task) {
+            deletes.remove(task.getId());
+            puts.put(task.getId(), task);
+            return this;
+        }
+
+        public Transaction delete(int id) {
+            puts.remove(id);
+            deletes.add(id);
+            return this;
+        }
+
+        public Collection<Task> getPuts() {
+            return puts.values();
+        }
+
+        public Collection<Integer> getDeletes() {
+            return deletes;
+        }
+
+        public boolean isEmpty() {
+            return puts.isEmpty() && deletes.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package services;
+
+import exceptions.ManagerSaveException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/*
+ * Отложенная запись на выделенном потоке. Всё, что накопилось в очереди, пока шла предыдущая
+ * запись, уходит одной пачкой (group commit). После пачки политика долговечности решает,
+ * нужен ли fsync: NONE - только сброс в ОС, INTERVAL - не чаще раза в syncIntervalMillis,
+ * FSYNC_EACH_BATCH - после каждой пачки. Ошибка записи запоминается и пробрасывается
+ * из следующих submit/flush/close.
+ */
+class WriteBehindPersister<T> implements AutoCloseable {
+    static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+    private final Consumer<List<T>> batchWriter;
+    private final Runnable syncer;
+    private final DurabilityPolicy policy;
+    private final long syncIntervalNanos;
+    private final ReentrantLock lock;
+    private final Condition changed;
+    private final Thread thread;
+    private List<T> pending;
+    private long submitted;
+    private long written;
+    private long batches;
+    private boolean closed;
+    private RuntimeException failure;
+    private boolean unsynced;
+    private long lastSyncNanos;
+
+    WriteBehindPersister(String name, Consumer<List<T>> batchWriter, Runnable syncer, DurabilityPolicy policy,
+                         long syncIntervalMillis) {
+        this.batchWriter = batchWriter;
+        this.syncer = syncer;
+        this.policy = policy;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.pending = new ArrayList<>();
+        this.lastSyncNanos = System.nanoTime();
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void submit(T item) {
+        lock.lock();
+        try {
+            checkState();
+            pending.add(item);
+            submitted++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Бросает ManagerSaveException, если запись остановлена или упала. Вызывается до изменения
+     * в памяти, чтобы отказ submit не оставлял менеджер изменённым, но не сохранённым.
+     */
+    void checkAccepting() {
+        lock.lock();
+        try {
+            checkState();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Ждёт, пока будет записано всё, что отправлено до вызова. Нельзя вызывать под монитором,
+     * который поток записи берёт при обработке пачки.
+     */
+    void flush() {
+        lock.lock();
+        try {
+            long target = submitted;
+            while (written < target && failure == null) {
+                changed.awaitUninterruptibly();
+            }
+            checkFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getBatchCount() {
+        lock.lock();
+        try {
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            checkFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkState() {
+        checkFailure();
+        if (closed) {
+            throw new ManagerSaveException("Отложенная запись остановлена.");
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new ManagerSaveException("Ошибка отложенной записи: " + failure.getMessage());
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<T> batch;
+            boolean finished;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed && !isSyncDue()) {
+                    if (unsynced && policy == DurabilityPolicy.INTERVAL) {
+                        changed.awaitNanos(lastSyncNanos + syncIntervalNanos - System.nanoTime());
+                    } else {
+                        changed.awaitUninterruptibly();
+                    }
+                }
+                if (failure != null) return;
+                batch = pending;
+                pending = new ArrayList<>();
+                finished = batch.isEmpty() && closed;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            RuntimeException error = null;
+            try {
+                if (!batch.isEmpty()) {
+                    batchWriter.accept(batch);
+                    unsynced = true;
+                }
+                if (unsynced && (policy == DurabilityPolicy.FSYNC_EACH_BATCH || isSyncDue()
+                        || (finished && policy != DurabilityPolicy.NONE))) {
+                    syncer.run();
+                    unsynced = false;
+                    lastSyncNanos = System.nanoTime();
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                written += batch.size();
+                if (!batch.isEmpty()) {
+                    batches++;
+                }
+                if (error != null) {
+                    failure = error;
+                }
+                changed.signalAll();
+                if (finished || failure != null) return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean isSyncDue() {
+        return unsynced && policy == DurabilityPolicy.INTERVAL
+                && System.nanoTime() - lastSyncNanos >= syncIntervalNanos;
+    }
+}
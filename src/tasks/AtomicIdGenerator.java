@@ -0,0 +1,40 @@
+package tasks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AtomicIdGenerator implements IdGenerator {
+    private final AtomicInteger lastId;
+
+    public AtomicIdGenerator() {
+        this(0);
+    }
+
+    public AtomicIdGenerator(int lastId) {
+        this.lastId = new AtomicInteger(lastId);
+    }
+
+    @Override
+    public int nextId() {
+        return lastId.incrementAndGet();
+    }
+
+    @Override
+    public int reserve(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Размер блока id должен быть положительным: " + count);
+        }
+        return lastId.getAndAdd(count) + 1;
+    }
+
+    @Override
+    public void advanceTo(int id) {
+        if (lastId.get() < id) {
+            lastId.accumulateAndGet(id, Math::max);
+        }
+    }
+
+    @Override
+    public int getLastId() {
+        return lastId.get();
+    }
+}
@@ -1,26 +1,32 @@
 package tasks;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
 
+/*
+ * Состав подзадач публикуется копией при записи: изменение создаёт новое множество и подменяет ссылку,
+ * а уже выданное множество не меняется. Так менеджер может читать эпик без блокировок, пока другой
+ * поток добавляет или удаляет подзадачи.
+ */
 public class Epic extends Task {
-    private final Set<Integer> subtasks;
-    private LocalDateTime endTime;
+    private transient volatile SortedIntSet subtaskIds;
+    private volatile Set<Integer> subtasks;
+    private volatile LocalDateTime endTime;
 
-    public Epic(String name) {
-        super(name);
-        this.subtasks = new HashSet<>();
+    public Epic(IdGenerator idGenerator, String name) {
+        super(idGenerator, name);
+        publish(new SortedIntSet());
     }
 
-    public Epic(String name, String description) {
-        super(name, description);
-        this.subtasks = new HashSet<>();
+    public Epic(IdGenerator idGenerator, String name, String description) {
+        super(idGenerator, name, description);
+        publish(new SortedIntSet());
     }
 
     public Epic(int id, String name, String description) {
         super(id, name, description);
-        this.subtasks = new HashSet<>();
+        publish(new SortedIntSet());
     }
 
     public static Epic createFromString(String value, String fieldDelimiter) {
@@ -42,23 +48,61 @@ public class Epic extends Task {
     }
 
     public void addSubtask(int id) {
-        subtasks.add(id);
+        publish(getSubtaskIds().with(id));
+    }
+
+    public void addSubtasks(int[] ids) {
+        publish(getSubtaskIds().withAll(ids));
     }
 
     public void clearSubtasks() {
-        subtasks.clear();
+        publish(new SortedIntSet());
     }
 
     public void removeSubtask(int id) {
-        subtasks.remove(id);
+        publish(getSubtaskIds().without(id));
+    }
+
+    private void publish(SortedIntSet ids) {
+        subtasks = Collections.unmodifiableSet(ids.asSet());
+        subtaskIds = ids;
+    }
+
+    /*
+     * Неизменяемый снимок состава. Gson создаёт эпик без конструктора и заполняет только subtasks,
+     * поэтому примитивное множество при необходимости восстанавливается из него.
+     */
+    public SortedIntSet getSubtaskIds() {
+        SortedIntSet ids = subtaskIds;
+        if (ids == null) {
+            ids = new SortedIntSet();
+            if (subtasks != null) {
+                subtasks.forEach(ids::add);
+            }
+            publish(ids);
+        }
+        return ids;
     }
 
     public Set<Integer> getSubtasks() {
-        return subtasks;
+        return Collections.unmodifiableSet(getSubtaskIds().asSet());
+    }
+
+    public static Epic cloneWithId(Epic epic, int id) {
+        return new Epic(id, epic.getName(), epic.getDescription());
     }
 
-    public static Epic cloneWithNextId(Epic epic) {
-        return new Epic(epic.getName(), epic.getDescription());
+    /*
+     * Копия со статусом, сроками и составом подзадач. Снимок состава неизменяемый, поэтому общий.
+     */
+    public static Epic copyOf(Epic epic) {
+        Epic copy = cloneWithId(epic, epic.getId());
+        copy.setStatus(epic.getStatus());
+        copy.setStartTime(epic.getStartTime());
+        copy.setDuration(epic.getDuration());
+        copy.setEndTime(epic.getEndTime());
+        copy.publish(epic.getSubtaskIds());
+        return copy;
     }
 
     @Override
@@ -71,7 +115,7 @@ public class Epic extends Task {
                 ", starTime='" + (getStartTime() != null ? getStartTime().format(DATE_TIME_FORMATTER) : "") + '\'' +
                 ", endTime='" + (getEndTime() != null ? getEndTime().format(DATE_TIME_FORMATTER) : "") + '\'' +
                 ", duration=" + (getDuration() != null ? getDuration().toMinutes() : 0) +
-                ", subtaskCount=" + subtasks.size() +
+                ", subtaskCount=" + getSubtasks().size() +
                 '}';
     }
 
@@ -0,0 +1,12 @@
+package tasks;
+
+public interface IdGenerator {
+
+    int nextId();
+
+    int reserve(int count);
+
+    void advanceTo(int id);
+
+    int getLastId();
+}
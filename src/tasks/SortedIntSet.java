@@ -0,0 +1,219 @@
+package tasks;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+public class SortedIntSet {
+    private static final int DEFAULT_CAPACITY = 8;
+    private int[] values;
+    private int size;
+    /*
+     * Копия, полученная из with, владеет свободным хвостом массива и может дописать в него следующий
+     * элемент без копирования; после этого хвостом владеет новая копия. Так заполнение эпика по
+     * возрастанию id стоит амортизированно O(1) на подзадачу.
+     */
+    private boolean ownsTail;
+
+    public SortedIntSet() {
+        values = new int[0];
+    }
+
+    private SortedIntSet(int[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    public boolean add(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) return false;
+
+        index = -index - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    /*
+     * Слияние за O(n + k log k) вместо k вставок со сдвигом массива.
+     */
+    public void addAll(int[] added) {
+        int[] sorted = Arrays.copyOf(added, added.length);
+        Arrays.sort(sorted);
+        int[] merged = new int[size + sorted.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < size || j < sorted.length) {
+            int value = j >= sorted.length || (i < size && values[i] <= sorted[j]) ? values[i++] : sorted[j++];
+            if (count == 0 || merged[count - 1] != value) {
+                merged[count++] = value;
+            }
+        }
+        values = merged;
+        size = count;
+    }
+
+    /*
+     * Копирующие варианты add, addAll и remove: исходное множество не меняется, поэтому его можно
+     * читать из других потоков без блокировок, пока изменённая копия публикуется вместо него.
+     * Копии могут делить массив с исходным множеством, поэтому менять их изменяющими методами нельзя.
+     */
+    public SortedIntSet with(int value) {
+        if (size == 0 || value > values[size - 1]) {
+            int[] target = values;
+            if (!ownsTail || size == target.length) {
+                target = Arrays.copyOf(values, Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+            }
+            target[size] = value;
+            ownsTail = false;
+            SortedIntSet appended = new SortedIntSet(target, size + 1);
+            appended.ownsTail = true;
+            return appended;
+        }
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) return this;
+
+        index = -index - 1;
+        int[] copy = new int[size + 1];
+        System.arraycopy(values, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(values, index, copy, index + 1, size - index);
+        return new SortedIntSet(copy, size + 1);
+    }
+
+    public SortedIntSet withAll(int[] added) {
+        SortedIntSet copy = new SortedIntSet(toArray(), size);
+        copy.addAll(added);
+        return copy;
+    }
+
+    public SortedIntSet without(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) return this;
+
+        int[] copy = new int[size - 1];
+        System.arraycopy(values, 0, copy, 0, index);
+        System.arraycopy(values, index + 1, copy, index, size - index - 1);
+        return new SortedIntSet(copy, size - 1);
+    }
+
+    public boolean remove(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) return false;
+
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /*
+     * Индекс первого элемента больше value (size(), если таких нет).
+     */
+    public int indexAfter(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " вне диапазона 0.." + (size - 1));
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        values = new int[0];
+        size = 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(values[i]);
+        }
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public Set<Integer> asSet() {
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer value && SortedIntSet.this.contains(value);
+            }
+
+            @Override
+            public boolean add(Integer value) {
+                return SortedIntSet.this.add(value);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return o instanceof Integer value && SortedIntSet.this.remove(value);
+            }
+
+            @Override
+            public void clear() {
+                SortedIntSet.this.clear();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<>() {
+                    private int index;
+                    private boolean removable;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        removable = true;
+                        return values[index++];
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (!removable) throw new IllegalStateException();
+                        SortedIntSet.this.remove(values[--index]);
+                        removable = false;
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -6,30 +6,32 @@ import java.time.LocalDateTime;
 public class Subtask extends Task {
     private final int epicId;
 
-    public Subtask(String name, String description, Status status, int epicId) {
-        super(name, description, status);
+    public Subtask(IdGenerator idGenerator, String name, String description, Status status, int epicId) {
+        super(idGenerator, name, description, status);
         this.epicId = epicId;
     }
 
     public Subtask(
+            IdGenerator idGenerator,
             String name,
             String description,
             String status,
             String startTime,
             int duration,
             int epicId) {
-        super(name, description, status, startTime, duration);
+        super(idGenerator, name, description, status, startTime, duration);
         this.epicId = epicId;
     }
 
     public Subtask(
+            IdGenerator idGenerator,
             String name,
             String description,
             Status status,
             LocalDateTime startTime,
             Duration duration,
             int epicId) {
-        super(name, description, status, startTime, duration);
+        super(idGenerator, name, description, status, startTime, duration);
         this.epicId = epicId;
     }
 
@@ -67,8 +69,8 @@ public class Subtask extends Task {
         return epicId;
     }
 
-    public static Subtask cloneWithNextId(Subtask subtask) {
-        return new Subtask(subtask.getName(), subtask.getDescription(),
+    public static Subtask cloneWithId(Subtask subtask, int id) {
+        return new Subtask(id, subtask.getName(), subtask.getDescription(),
                 subtask.getStatus(), subtask.getStartTime(),
                 subtask.getDuration(), subtask.getEpicId());
     }
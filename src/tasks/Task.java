@@ -7,30 +7,33 @@ import java.util.Objects;
 
 public class Task {
     public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
-    private static int totalTasksCount = 0;
     private final int id;
-    private String name;
-    private String description;
-    private Status status;
-    private LocalDateTime startTime;
-    private Duration duration;
-
-    public Task(String name) {
-        this.id = getNextId();
+    /*
+     * Менеджер меняет эпик на месте (название, статус и сроки), а ConcurrentTaskManager читает его
+     * без блокировок, поэтому изменяемые поля volatile.
+     */
+    private volatile String name;
+    private volatile String description;
+    private volatile Status status;
+    private volatile LocalDateTime startTime;
+    private volatile Duration duration;
+
+    public Task(IdGenerator idGenerator, String name) {
+        this.id = idGenerator.nextId();
         this.name = name;
         this.description = "";
         this.status = Status.NEW;
     }
 
-    public Task(String name, String description) {
-        this.id = getNextId();
+    public Task(IdGenerator idGenerator, String name, String description) {
+        this.id = idGenerator.nextId();
         this.name = name;
         this.description = description;
         this.status = Status.NEW;
     }
 
-    public Task(String name, String description, Status status) {
-        this.id = getNextId();
+    public Task(IdGenerator idGenerator, String name, String description, Status status) {
+        this.id = idGenerator.nextId();
         this.name = name;
         this.description = description;
         this.status = status;
@@ -41,10 +44,6 @@ public class Task {
         this.name = name;
         this.description = description;
         this.status = Status.NEW;
-
-        if (id > totalTasksCount) {
-            setNextId(id);
-        }
     }
 
     public Task(
@@ -60,19 +59,16 @@ public class Task {
         this.status = status;
         this.startTime = starTime;
         this.duration = duration;
-
-        if (id > totalTasksCount) {
-            setNextId(id);
-        }
     }
 
     public Task(
+            IdGenerator idGenerator,
             String name,
             String description,
             String status,
             String startTime,
             int duration) {
-        this.id = getNextId();
+        this.id = idGenerator.nextId();
         this.name = name;
         this.description = description;
         this.status = Status.valueOf(status);
@@ -81,12 +77,13 @@ public class Task {
     }
 
     public Task(
+            IdGenerator idGenerator,
             String name,
             String description,
             Status status,
             LocalDateTime startTime,
             Duration duration) {
-        this.id = getNextId();
+        this.id = idGenerator.nextId();
         this.name = name;
         this.description = description;
         this.status = status;
@@ -94,14 +91,6 @@ public class Task {
         this.duration = duration;
     }
 
-    private static int getNextId() {
-        return ++totalTasksCount;
-    }
-
-    private static void setNextId(int value) {
-        totalTasksCount = value;
-    }
-
     public static Task createFromString(String value, String fieldDelimiter) {
         String[] data = value.split(fieldDelimiter, -1);
         LocalDateTime starTime = null;
@@ -170,8 +159,8 @@ public class Task {
         this.duration = duration;
     }
 
-    public static Task cloneWithNextId(Task task) {
-        return new Task(task.getName(), task.getDescription(), task.getStatus(),
+    public static Task cloneWithId(Task task, int id) {
+        return new Task(id, task.getName(), task.getDescription(), task.getStatus(),
                 task.getStartTime(), task.getDuration());
     }
 
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import services.Managers;
 import services.TaskManager;
+import tasks.IdGenerator;
 import tasks.Status;
 
 import java.net.URI;
@@ -38,6 +39,10 @@ abstract class ApiTest {
                 .create();
     }
 
+    static IdGenerator ids() {
+        return manager.getIdGenerator();
+    }
+
     @AfterAll
     static void tearDown() {
         server.stop();
@@ -57,6 +62,19 @@ abstract class ApiTest {
         }
     }
 
+    public HttpResponse<String> sendConditionalGetRequest(String uri, String etag) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(uri))
+                    .header("If-None-Match", etag)
+                    .GET()
+                    .build();
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public HttpResponse<String> sendPostRequest(String uri, String body) {
         try {
             URI url = URI.create(uri);
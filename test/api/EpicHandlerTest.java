@@ -7,9 +7,18 @@ import com.google.gson.reflect.TypeToken;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import services.Managers;
+import services.TaskManager;
 import tasks.Epic;
+import tasks.Status;
+import tasks.Subtask;
 
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -22,7 +31,7 @@ class EpicHandlerTest extends ApiTest {
 
     @BeforeAll
     static void init() {
-        defaultEpic = new Epic("Новый эпик");
+        defaultEpic = new Epic(ids(), "Новый эпик");
         defaultJsonEpic = new JsonObject();
         defaultJsonEpic.addProperty("name", defaultEpic.getName());
     }
@@ -103,7 +112,7 @@ class EpicHandlerTest extends ApiTest {
     @Test
     void handleUpdate_shouldBeDifferentFieldValueAfterUpdate() {
         String nameBefore = "Новая подзадача";
-        Epic epic = new Epic(nameBefore);
+        Epic epic = new Epic(ids(), nameBefore);
         manager.addEpic(epic);
 
         String nameAfter = "Обновленная подзадача";
@@ -145,6 +154,95 @@ class EpicHandlerTest extends ApiTest {
         assertEquals(200, statusCode);
     }
 
+    @Test
+    void handleReadEpicSubtasks_pagesShouldFollowIdOrderAndCursor() {
+        Epic epic = new Epic(ids(), "Эпик со страницами");
+        manager.addEpic(epic);
+        List<Integer> subtaskIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Subtask subtask = new Subtask(ids(), "Подзадача " + i, "", Status.NEW, epic.getId());
+            manager.addSubtask(subtask);
+            subtaskIds.add(subtask.getId());
+        }
+        String uri = HOST + PATH + "/" + epic.getId() + "/subtasks?limit=2";
+
+        HttpResponse<String> firstPage = sendGetRequest(uri);
+        String cursor = firstPage.headers().firstValue(Handler.NEXT_CURSOR_HEADER).orElseThrow();
+        HttpResponse<String> secondPage = sendGetRequest(uri + "&after=" + cursor);
+        HttpResponse<String> lastPage = sendGetRequest(uri + "&after=" + subtaskIds.get(3));
+
+        assertEquals(subtaskIds.subList(0, 2), idsOf(firstPage));
+        assertEquals(subtaskIds.subList(2, 4), idsOf(secondPage));
+        assertEquals(subtaskIds.subList(4, 5), idsOf(lastPage));
+        assertTrue(lastPage.headers().firstValue(Handler.NEXT_CURSOR_HEADER).isEmpty(),
+                "У последней страницы не должно быть курсора.");
+    }
+
+    @Test
+    void handleReadAll_responseCodeShouldBe400IfLimitIsIncorrect() {
+        assertEquals(400, sendGetRequest(HOST + PATH + "?limit=-1").statusCode());
+        assertEquals(400, sendGetRequest(HOST + PATH + "?limit=abc").statusCode());
+    }
+
+    private static List<Integer> idsOf(HttpResponse<String> response) {
+        List<Integer> ids = new ArrayList<>();
+        JsonParser.parseString(response.body()).getAsJsonArray()
+                .forEach(element -> ids.add(element.getAsJsonObject().get("id").getAsInt()));
+        return ids;
+    }
+
+    @Test
+    void handleReadEpicSubtasks_shouldNotSendSecondResponseWhenSerializationFails() throws IOException {
+        TaskManager delegate = Managers.getDefaultTaskManager();
+        Epic epic = new Epic(delegate.getIdGenerator(), "Эпик");
+        delegate.addEpic(epic);
+        Subtask subtask = new Subtask(delegate.getIdGenerator(), "Подзадача", "x".repeat(200), Status.NEW,
+                epic.getId());
+        delegate.addSubtask(subtask);
+        int[] failAt = new int[1];
+        TaskManager failing = (TaskManager) Proxy.newProxyInstance(TaskManager.class.getClassLoader(),
+                new Class<?>[]{TaskManager.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getEpicSubtasks") && args.length == 3) {
+                        return new AbstractList<Subtask>() {
+                            @Override
+                            public Subtask get(int index) {
+                                if (index == failAt[0]) throw new IllegalStateException("Сбой чтения");
+                                return subtask;
+                            }
+
+                            @Override
+                            public int size() {
+                                return failAt[0] + 1;
+                            }
+                        };
+                    }
+                    return method.invoke(delegate, args);
+                });
+        HttpTaskServer failingServer = new HttpTaskServer(8081, failing, ExecutorMode.SINGLE);
+        failingServer.start();
+        try {
+            URI uri = URI.create("http://localhost:8081" + PATH + "/" + epic.getId() + "/subtasks");
+            HttpRequest request = HttpRequest.newBuilder().uri(uri).GET().build();
+
+            failAt[0] = 1;
+            assertEquals(500, sendRequest(request).statusCode(), "Ошибка до отправки заголовков - не 500.");
+
+            failAt[0] = 1000;
+            assertThrows(IOException.class, () -> client.send(request, HttpResponse.BodyHandlers.ofString()),
+                    "Обрезанный ответ принят как целый.");
+        } finally {
+            failingServer.stop();
+        }
+    }
+
+    private static HttpResponse<String> sendRequest(HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     static class EpicListTypeToken extends TypeToken<ArrayList<Epic>> {
     }
 }
\ No newline at end of file
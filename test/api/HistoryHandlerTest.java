@@ -24,10 +24,25 @@ class HistoryHandlerTest extends ApiTest {
         assertEquals(200, statusCode);
     }
 
+    @Test
+    void handle_etagShouldChangeAfterView() {
+        manager.clearAllData();
+        Task task = new Task(ids(), "Задача");
+        manager.addTask(task);
+        String etag = sendGetRequest(HOST + PATH).headers().firstValue("ETag").orElseThrow();
+
+        int unchangedStatus = sendConditionalGetRequest(HOST + PATH, etag).statusCode();
+        manager.getTask(task.getId());
+        int changedStatus = sendConditionalGetRequest(HOST + PATH, etag).statusCode();
+
+        assertEquals(304, unchangedStatus);
+        assertEquals(200, changedStatus);
+    }
+
     @Test
     void handle_responseListAfterGetTaskByIdShouldBeNonEmpty() {
         manager.clearAllData();
-        Task task = new Task("Задача");
+        Task task = new Task(ids(), "Задача");
         manager.addTask(task);
 
         manager.getTask(task.getId());
@@ -6,7 +6,9 @@ import com.google.gson.reflect.TypeToken;
 import org.junit.jupiter.api.Test;
 import tasks.Task;
 
+import java.net.URLEncoder;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,7 +28,7 @@ class PrioritizedHandlerTest extends ApiTest {
     @Test
     void handle_responseListAfterCreationPrioritizedTaskShouldBeNonEmpty() {
         manager.clearAllData();
-        Task task = new Task("Первая задача", "", "NEW",
+        Task task = new Task(ids(), "Первая задача", "", "NEW",
                 "12.09.2024 12:00", 60);
         manager.addTask(task);
 
@@ -37,6 +39,35 @@ class PrioritizedHandlerTest extends ApiTest {
         assertFalse(tasks.isEmpty());
     }
 
+    @Test
+    void handle_rangeRequestShouldReturnPageAndNextCursor() {
+        manager.clearAllData();
+        manager.addTask(new Task(ids(), "Первая задача", "", "NEW", "12.09.2024 12:00", 60));
+        manager.addTask(new Task(ids(), "Вторая задача", "", "NEW", "13.09.2024 12:00", 60));
+        manager.addTask(new Task(ids(), "Третья задача", "", "NEW", "20.09.2024 12:00", 60));
+        String range = "?from=2024-09-12T00:00&to=2024-09-19T00:00&limit=1";
+
+        HttpResponse<String> response = sendGetRequest(HOST + PATH + range);
+        List<Task> tasks = gson.fromJson(response.body(), new TaskListTypeToken().getType());
+        String cursor = response.headers().firstValue(PrioritizedHandler.NEXT_CURSOR_HEADER).orElseThrow();
+
+        assertEquals(200, response.statusCode());
+        assertEquals(List.of("Первая задача"), tasks.stream().map(Task::getName).toList());
+
+        response = sendGetRequest(HOST + PATH + range + "&cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8));
+        tasks = gson.fromJson(response.body(), new TaskListTypeToken().getType());
+
+        assertEquals(List.of("Вторая задача"), tasks.stream().map(Task::getName).toList());
+        assertTrue(response.headers().firstValue(PrioritizedHandler.NEXT_CURSOR_HEADER).isEmpty());
+    }
+
+    @Test
+    void handle_responseCodeShouldBe400IfRangeIsIncorrect() {
+        HttpResponse<String> response = sendGetRequest(HOST + PATH + "?from=tomorrow");
+
+        assertEquals(400, response.statusCode());
+    }
+
     @Test
     void handle_responseCodeShouldBe500IfUriIsIncorrect() {
         HttpResponse<String> response = sendGetRequest(HOST + PATH + "/1s");
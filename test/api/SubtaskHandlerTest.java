@@ -25,10 +25,10 @@ class SubtaskHandlerTest extends ApiTest {
 
     @BeforeAll
     static void addEpic() {
-        defaultEpic = new Epic("Новый эпик");
+        defaultEpic = new Epic(ids(), "Новый эпик");
         manager.addEpic(defaultEpic);
 
-        defaultSubtask = new Subtask("Новая подзадача", "", Status.NEW, defaultEpic.getId());
+        defaultSubtask = new Subtask(ids(), "Новая подзадача", "", Status.NEW, defaultEpic.getId());
 
         defaultJsonSubtask = new JsonObject();
         defaultJsonSubtask.addProperty("name", "Подзадача эпика #" + defaultEpic.getId());
@@ -109,7 +109,7 @@ class SubtaskHandlerTest extends ApiTest {
 
     @Test
     void handleCreate_responseCodeShouldBe406WhenNewSubtaskIntersectsWithAnotherSubtask() {
-        Subtask subtask = new Subtask("Подзадача", "",
+        Subtask subtask = new Subtask(ids(), "Подзадача", "",
                 "NEW", "09.12.2024 15:00", 60, defaultEpic.getId());
         manager.addSubtask(subtask);
 
@@ -126,7 +126,7 @@ class SubtaskHandlerTest extends ApiTest {
     @Test
     void handleUpdate_shouldBeDifferentFieldValueAfterUpdate() {
         String nameBefore = "Новая подзадача";
-        Subtask subtask = new Subtask(nameBefore, "", Status.NEW, defaultEpic.getId());
+        Subtask subtask = new Subtask(ids(), nameBefore, "", Status.NEW, defaultEpic.getId());
         manager.addSubtask(subtask);
 
         String nameAfter = "Обновленная подзадача";
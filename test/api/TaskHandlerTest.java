@@ -9,9 +9,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import tasks.Task;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,7 +30,7 @@ class TaskHandlerTest extends ApiTest {
 
     @BeforeAll
     static void init() {
-        defaultTask = new Task("Новая задача");
+        defaultTask = new Task(ids(), "Новая задача");
         defaultJsonTask = new JsonObject();
         defaultJsonTask.addProperty("name", defaultTask.getName());
     }
@@ -99,7 +107,7 @@ class TaskHandlerTest extends ApiTest {
 
     @Test
     void handleCreate_responseCodeShouldBe406WhenTimeOfNewTaskIntersectsWithAnotherTask() {
-        Task task = new Task("Первая задача", "", "NEW",
+        Task task = new Task(ids(), "Первая задача", "", "NEW",
                 "12.09.2024 12:00", 60);
         manager.addTask(task);
 
@@ -116,7 +124,7 @@ class TaskHandlerTest extends ApiTest {
     @Test
     void handleUpdate_shouldBeDifferentFieldValueAfterUpdate() {
         String nameBefore = "Новая задача";
-        Task task = new Task(nameBefore);
+        Task task = new Task(ids(), nameBefore);
         manager.addTask(task);
 
         String nameAfter = "Обновленная задача";
@@ -150,6 +158,180 @@ class TaskHandlerTest extends ApiTest {
         assertTrue(tasksCountAfter < tasksCountBefore);
     }
 
+    @Test
+    void handleSchedule_taskShouldBePlacedIntoFirstFittingGap() {
+        manager.addTask(new Task(ids(), "Утро", "", "NEW", "12.09.2024 09:00", 60));
+        manager.addTask(new Task(ids(), "Обед", "", "NEW", "12.09.2024 10:30", 60));
+        JsonObject jsonTask = new JsonObject();
+        jsonTask.addProperty("name", "Встреча");
+        jsonTask.addProperty("duration", 45);
+
+        HttpResponse<String> response = sendPostRequest(HOST + PATH + "/schedule?notBefore=2024-09-12T09:30",
+                jsonTask.toString());
+        Task scheduledTask = gson.fromJson(response.body(), Task.class);
+
+        assertEquals(201, response.statusCode());
+        assertEquals("12.09.2024 11:30", scheduledTask.getStartTime().format(Task.DATE_TIME_FORMATTER));
+        assertEquals(scheduledTask, manager.findTask(scheduledTask.getId()));
+    }
+
+    @Test
+    void handleSchedule_responseCodeShouldBe400WithoutDuration() {
+        JsonObject jsonTask = new JsonObject();
+        jsonTask.addProperty("name", "Без длительности");
+
+        HttpResponse<String> response = sendPostRequest(HOST + PATH + "/schedule", jsonTask.toString());
+
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    void handleReadAll_pagesShouldCoverAllTasksInIdOrder() {
+        List<Integer> expectedIds = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Task task = new Task(ids(), "Задача " + i);
+            manager.addTask(task);
+            expectedIds.add(task.getId());
+        }
+
+        List<Integer> receivedIds = new ArrayList<>();
+        String uri = HOST + PATH + "?limit=3";
+        int pages = 0;
+        while (uri != null) {
+            HttpResponse<String> response = sendGetRequest(uri);
+            List<Task> page = gson.fromJson(response.body(), new TaskListTypeToken().getType());
+            page.forEach(task -> receivedIds.add(task.getId()));
+            pages++;
+            uri = response.headers().firstValue(Handler.NEXT_CURSOR_HEADER)
+                    .map(cursor -> HOST + PATH + "?limit=3&after=" + cursor).orElse(null);
+        }
+
+        assertEquals(expectedIds, receivedIds);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void handleReadAll_responseCodeShouldBe304UntilTasksChange() {
+        manager.addTask(defaultTask);
+        String etag = sendGetRequest(HOST + PATH).headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<String> notModified = sendConditionalGetRequest(HOST + PATH, etag);
+        manager.addTask(new Task(ids(), "Ещё задача"));
+        HttpResponse<String> modified = sendConditionalGetRequest(HOST + PATH, etag);
+
+        assertEquals(304, notModified.statusCode());
+        assertTrue(notModified.body().isEmpty(), "У ответа 304 не должно быть тела.");
+        assertEquals(200, modified.statusCode());
+        assertNotEquals(etag, modified.headers().firstValue("ETag").orElseThrow());
+    }
+
+    @Test
+    void handleReadAll_bodyShouldBeCompactByDefaultAndIndentedOnRequest() {
+        manager.addTask(defaultTask);
+
+        String compactBody = sendGetRequest(HOST + PATH).body();
+        String prettyBody = sendGetRequest(HOST + PATH + "?pretty=true").body();
+
+        assertFalse(compactBody.contains("\n"), "Ответ по умолчанию должен быть компактным.");
+        assertTrue(prettyBody.contains("\n  "), "Ответ с pretty=true должен быть с отступами.");
+        assertEquals(JsonParser.parseString(compactBody), JsonParser.parseString(prettyBody));
+    }
+
+    @Test
+    void handleReadAll_largeResponseShouldBeGzippedOnRequest() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            manager.addTask(new Task(ids(), "Задача " + i, "Описание задачи " + i));
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(HOST + PATH))
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        String body;
+        try (GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        List<Task> receivedTasks = gson.fromJson(body, new TaskListTypeToken().getType());
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals(30, receivedTasks.size());
+        assertTrue(response.body().length < body.length(), "Сжатый ответ должен быть меньше.");
+        assertEquals(304, sendConditionalGetRequest(HOST + PATH, etag).statusCode());
+    }
+
+    @Test
+    void handleReadOne_smallResponseShouldNotBeCompressed() throws Exception {
+        manager.addTask(defaultTask);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(HOST + PATH + "/" + defaultTask.getId()))
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET()
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Encoding").isEmpty(), "Малый ответ не сжимается.");
+        assertEquals(defaultTask, gson.fromJson(response.body(), Task.class));
+    }
+
+    @Test
+    void handleCreate_gzippedRequestBodyShouldBeAccepted() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream stream = new GZIPOutputStream(compressed)) {
+            stream.write(defaultJsonTask.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(HOST + PATH))
+                .header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(compressed.toByteArray()))
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(201, response.statusCode());
+        assertEquals(1, manager.getTasksCount());
+    }
+
+    @Test
+    void handleCreate_gzipBombShouldBeRejectedWith413() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream stream = new GZIPOutputStream(compressed)) {
+            stream.write(new byte[HttpCompression.MAX_DECODED_BODY_SIZE + 1]);
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(HOST + PATH))
+                .header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(compressed.toByteArray()))
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(413, response.statusCode());
+        assertEquals(0, manager.getTasksCount());
+    }
+
+    @Test
+    void handleCreate_parallelRequestsShouldAllBeApplied() {
+        int requestCount = 50;
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < requestCount; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(HOST + PATH))
+                    .POST(HttpRequest.BodyPublishers.ofString(defaultJsonTask.toString()))
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(201, response.join().statusCode());
+        }
+        assertEquals(requestCount, manager.getTasksCount());
+    }
+
     static class TaskListTypeToken extends TypeToken<ArrayList<Task>> {
     }
 }
\ No newline at end of file
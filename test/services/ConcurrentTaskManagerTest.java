@@ -0,0 +1,185 @@
+package services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasks.Epic;
+import tasks.SortedIntSet;
+import tasks.Status;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 500;
+
+    @BeforeEach
+    public void init() {
+        super.taskManager = new ConcurrentTaskManager(Managers.getDefaultHistoryManager());
+        super.taskManager.setEpicAggregatesVerification(true);
+    }
+
+    private void runConcurrently(Runnable action) {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                action.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void parallelAddsShouldNotLoseUpdates() {
+        Epic[] epics = new Epic[4];
+        for (int i = 0; i < epics.length; i++) {
+            epics[i] = new Epic(ids(), "Epic" + i, "");
+            taskManager.addEpic(epics[i]);
+        }
+
+        runConcurrently(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                taskManager.addTask(new Task(ids(), "Task", ""));
+                Epic epic = epics[i % epics.length];
+                Status status = i / epics.length % 2 == 0 ? Status.NEW : Status.DONE;
+                taskManager.addSubtask(new Subtask(ids(), "Subtask", "", status, epic.getId()));
+            }
+        });
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, taskManager.getTasksCount());
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, taskManager.getSubtasksCount());
+        for (Epic epic : epics) {
+            assertEquals(THREADS * OPERATIONS_PER_THREAD / epics.length, epic.getSubtasks().size());
+            assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        }
+    }
+
+    @Test
+    void parallelScheduledAddsShouldAcceptOneTaskPerSlot() {
+        int slots = 200;
+        LocalDateTime firstSlot = LocalDateTime.parse("01.06.2024 00:00", Task.DATE_TIME_FORMATTER);
+        AtomicInteger accepted = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < slots; i++) {
+                Task task = new Task(ids(), "Task", "", Status.NEW, firstSlot.plusMinutes(30L * i),
+                        Duration.ofMinutes(45));
+                if (taskManager.addTask(task) > 0) {
+                    accepted.incrementAndGet();
+                }
+            }
+        });
+
+        List<Task> prioritizedTasks = new ArrayList<>(taskManager.getPrioritizedTasks());
+        assertEquals(accepted.get(), prioritizedTasks.size());
+        assertEquals(accepted.get(), taskManager.getTasksCount());
+        for (int i = 1; i < prioritizedTasks.size(); i++) {
+            assertFalse(prioritizedTasks.get(i - 1).getEndTime().isAfter(prioritizedTasks.get(i).getStartTime()));
+        }
+    }
+
+    @Test
+    void parallelRemovalsShouldKeepEpicAndScheduleConsistent() {
+        Epic epic = new Epic(ids(), "Epic", "");
+        taskManager.addEpic(epic);
+        LocalDateTime firstSlot = LocalDateTime.parse("01.07.2024 00:00", Task.DATE_TIME_FORMATTER);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < THREADS * OPERATIONS_PER_THREAD; i++) {
+            ids.add(taskManager.addSubtask(new Subtask(ids(), "Subtask", "", Status.DONE,
+                    firstSlot.plusMinutes(10L * i), Duration.ofMinutes(10), epic.getId())));
+        }
+        AtomicInteger next = new AtomicInteger();
+
+        runConcurrently(() -> {
+            int i;
+            while ((i = next.getAndIncrement()) < ids.size()) {
+                if (i % 2 == 0) {
+                    taskManager.removeSubtask(ids.get(i));
+                }
+            }
+        });
+
+        int remaining = ids.size() / 2;
+        assertEquals(remaining, taskManager.getSubtasksCount());
+        assertEquals(remaining, taskManager.getPrioritizedTasks().size());
+        assertEquals(remaining, epic.getSubtasks().size());
+        assertEquals(Duration.ofMinutes(10L * remaining), epic.getDuration());
+    }
+
+    @Test
+    void epicSnapshotsSharingArrayShouldStayUnchanged() {
+        Epic epic = new Epic(1, "Epic", "");
+        epic.addSubtask(2);
+        SortedIntSet first = epic.getSubtaskIds();
+        epic.addSubtask(3);
+        SortedIntSet second = epic.getSubtaskIds();
+        epic.addSubtask(4);
+
+        assertArrayEquals(new int[]{2}, first.toArray(), "Первый снимок изменился.");
+        assertArrayEquals(new int[]{2, 3}, second.toArray(), "Второй снимок изменился.");
+        assertArrayEquals(new int[]{2, 3, 5}, second.with(5).toArray());
+        assertArrayEquals(new int[]{2, 3, 4}, epic.getSubtaskIds().toArray(), "Дозапись в старый снимок "
+                + "испортила текущий.");
+        epic.addSubtask(1);
+        epic.removeSubtask(3);
+        assertArrayEquals(new int[]{1, 2, 4}, epic.getSubtaskIds().toArray());
+        assertArrayEquals(new int[]{2, 3}, second.toArray(), "Второй снимок изменился.");
+    }
+
+    @Test
+    void lockFreeReadsShouldSeeConsistentEpicWhileSubtasksChange() {
+        Epic epic = new Epic(ids(), "Epic", "");
+        taskManager.addEpic(epic);
+        AtomicInteger writers = new AtomicInteger(THREADS / 2);
+
+        runConcurrently(() -> {
+            if (writers.getAndDecrement() > 0) {
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    int id = taskManager.addSubtask(new Subtask(ids(), "Subtask", "", Status.DONE, epic.getId()));
+                    if (i % 2 == 0) {
+                        taskManager.removeSubtask(id);
+                    }
+                }
+                return;
+            }
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Epic snapshot = taskManager.findEpic(epic.getId());
+                int[] ids = snapshot.getSubtaskIds().toArray();
+                for (int j = 1; j < ids.length; j++) {
+                    assertTrue(ids[j - 1] < ids[j], "Снимок подзадач эпика не упорядочен.");
+                }
+                taskManager.getEpicSubtasks(epic.getId()).values().forEach(Assertions::assertNotNull);
+                taskManager.getEpicSubtasks(epic.getId(), 0, 10).forEach(Assertions::assertNotNull);
+            }
+        });
+
+        assertEquals(THREADS / 2 * OPERATIONS_PER_THREAD / 2, epic.getSubtasks().size());
+        assertEquals(Status.DONE, epic.getStatus());
+    }
+}
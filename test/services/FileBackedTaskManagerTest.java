@@ -1,13 +1,21 @@
 package services;
 
+import exceptions.ManagerLoadException;
+import exceptions.ManagerSaveException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import tasks.AtomicIdGenerator;
 import tasks.Epic;
+import tasks.Status;
 import tasks.Subtask;
 import tasks.Task;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +29,7 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
         try {
             taskManagerDataFile = File.createTempFile("testData", ".csv");
             super.taskManager = new FileBackedTaskManager(Managers.getDefaultHistoryManager(), taskManagerDataFile);
+            super.taskManager.setEpicAggregatesVerification(true);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -62,7 +71,7 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     void saveTaskToEmptyFile() {
         long before = taskManagerDataFile.length();
 
-        Task singleTask1 = new Task("Сходить за грибами", "Выйти не позднее 7.00");
+        Task singleTask1 = new Task(ids(), "Сходить за грибами", "Выйти не позднее 7.00");
         taskManager.addTask(singleTask1);
         long after = taskManagerDataFile.length();
 
@@ -71,7 +80,7 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
 
     @Test
     void loadTaskFromFile() {
-        Task task = new Task("Прогуляться", "");
+        Task task = new Task(ids(), "Прогуляться", "");
         taskManager.addTask(task);
         taskManager = null;
 
@@ -83,7 +92,7 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
 
     @Test
     void loadHistoryFromFile() {
-        Task task = new Task("Выпить кофе", "");
+        Task task = new Task(ids(), "Выпить кофе", "");
         taskManager.addTask(task);
         taskManager.getTask(task.getId());
         taskManager = null;
@@ -98,11 +107,513 @@ class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     void checkNextTaskIdAfterCreatingFromString() {
         String taskString = "100,Прочитать новости,,NEW";
         Task createdFromStringTask = Task.createFromString(taskString, ",");
-        int createdFromStringTaskId = createdFromStringTask.getId();
+        int createdFromStringTaskId = taskManager.addTask(createdFromStringTask);
 
-        Task nextTask = new Task("Выпить кофе", "");
+        Task nextTask = new Task(ids(), "Выпить кофе", "");
         int nextTaskId = nextTask.getId();
 
         assertTrue(nextTaskId > createdFromStringTaskId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void idGeneratorShouldBeSeededFromMaxLoadedId() {
+        taskManager.addTask(new Task(1000, "Прочитать новости", ""));
+        taskManager = null;
+
+        TaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile, new AtomicIdGenerator());
+
+        assertEquals(1000, newManager.getIdGenerator().getLastId());
+    }
+
+    @Test
+    void journalModeShouldAppendRecordsAndReplayThemOnLoad() throws IOException {
+        FileBackedTaskManager journaledManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL);
+        File journalFile = new File(taskManagerDataFile.getPath() + TaskJournal.FILE_SUFFIX);
+        long dataFileLength = taskManagerDataFile.length();
+
+        Task task = new Task(ids(), "Прогуляться", "");
+        Epic epic = new Epic(ids(), "Переезд", "");
+        journaledManager.addTask(task);
+        journaledManager.addEpic(epic);
+        Subtask subtask = new Subtask(ids(), "Собрать вещи", "", Status.DONE, epic.getId());
+        journaledManager.addSubtask(subtask);
+        journaledManager.getTask(task.getId());
+        task.setName("Пробежаться");
+        journaledManager.updateTask(task);
+        journaledManager.removeSubtask(subtask.getId());
+        journaledManager.close();
+        Files.writeString(journalFile.toPath(), "ADD,TASK,99999,Оборванная", StandardOpenOption.APPEND);
+
+        assertEquals(dataFileLength, taskManagerDataFile.length(), "Файл данных перезаписан.");
+        assertTrue(journalFile.length() > 0, "Журнал пуст.");
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL);
+
+        assertEquals("Пробежаться", newManager.findTask(task.getId()).getName());
+        assertNull(newManager.findTask(99999), "Оборванная запись восстановлена.");
+        assertTrue(newManager.getEpicsView().get(epic.getId()).getSubtasks().isEmpty());
+        assertEquals(List.of(task.getId()), newManager.getHistory().stream().map(Task::getId).toList());
+        assertFalse(journalFile.exists(), "Журнал не свёрнут в снимок.");
+        newManager.close();
+    }
+
+    @Test
+    void operationsThatChangeNothingShouldNotBeJournaled() {
+        FileBackedTaskManager journaledManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL);
+        File journalFile = new File(taskManagerDataFile.getPath() + TaskJournal.FILE_SUFFIX);
+        long journalLength = journalFile.length();
+
+        journaledManager.updateTask(new Task(ids(), "Нет такой", ""));
+        journaledManager.updateEpic(new Epic(ids(), "Нет такого", ""));
+        journaledManager.removeTask(12345);
+        journaledManager.removeEpic(12345);
+        journaledManager.removeSubtask(12345);
+        journaledManager.clearEpicSubtasks(12345);
+        journaledManager.clearTasks();
+        journaledManager.clearAllData();
+        journaledManager.close();
+
+        assertEquals(journalLength, journalFile.length(), "В журнал попали операции без изменений.");
+    }
+
+    @Test
+    void readsShouldOnlyAppendToHistoryFile() {
+        Task task = new Task(ids(), "Выпить кофе", "");
+        Task removedTask = new Task(ids(), "Выпить чай", "");
+        taskManager.addTask(task);
+        taskManager.addTask(removedTask);
+        long dataFileModified = taskManagerDataFile.lastModified();
+        long dataFileLength = taskManagerDataFile.length();
+        File historyFile = new File(taskManagerDataFile.getPath() + HistoryFile.FILE_SUFFIX);
+
+        taskManager.getTask(removedTask.getId());
+        taskManager.getTask(task.getId());
+        taskManager.getTask(removedTask.getId());
+
+        assertEquals(dataFileLength, taskManagerDataFile.length(), "Чтение перезаписало файл данных.");
+        assertEquals(dataFileModified, taskManagerDataFile.lastModified(), "Чтение перезаписало файл данных.");
+        assertTrue(historyFile.length() > 0, "История не сохранена.");
+
+        taskManager.removeTask(removedTask.getId());
+        taskManager.close();
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile);
+
+        assertEquals(List.of(task.getId()), newManager.getHistory().stream().map(Task::getId).toList());
+        newManager.close();
+    }
+
+    @Test
+    void writeBehindShouldCoalesceBurstIntoFewSnapshotWrites() {
+        FileBackedTaskManager writeBehindManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.SNAPSHOT, DurabilityPolicy.FSYNC_EACH_BATCH);
+        int count = 100;
+
+        synchronized (writeBehindManager) {
+            for (int i = 0; i < count; i++) {
+                writeBehindManager.addTask(new Task(ids(), "Задача " + i, ""));
+            }
+        }
+        writeBehindManager.flush();
+
+        assertTrue(writeBehindManager.getPersister().getBatchCount() <= 2, "Изменения не объединены.");
+        writeBehindManager.close();
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile);
+        assertEquals(count, newManager.getTasksCount(), "Неверное количество элементов.");
+    }
+
+    @Test
+    void threadSafeManagerShouldRequireWriteBehind() {
+        assertThrows(IllegalArgumentException.class, () -> Managers.getThreadSafeTaskManager(taskManager),
+                "Файловый менеджер без отложенной записи обёрнут блокировкой.");
+    }
+
+    @Test
+    void readerShouldNotWaitForSlowSnapshotWrite() {
+        FileBackedTaskManager writeBehindManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.SNAPSHOT, DurabilityPolicy.FSYNC_EACH_BATCH);
+        for (int i = 0; i < 20_000; i++) {
+            writeBehindManager.addTask(new Task(ids(), "Задача " + i, "Описание " + i));
+        }
+        int id = writeBehindManager.addTask(new Task(ids(), "Задача", ""));
+        writeBehindManager.flush();
+        TaskManager threadSafeManager = Managers.getThreadSafeTaskManager(writeBehindManager);
+        long batchCount = writeBehindManager.getPersister().getBatchCount();
+
+        threadSafeManager.updateTask(new Task(id, "Новое имя", ""));
+        Task found = threadSafeManager.findTask(id);
+
+        assertEquals(batchCount, writeBehindManager.getPersister().getBatchCount(), "Чтение ждало записи снимка.");
+        assertEquals("Новое имя", found.getName(), "Изменение не видно при чтении.");
+        writeBehindManager.close();
+        assertEquals("Новое имя", FileBackedTaskManager.loadFromFile(taskManagerDataFile)
+                .findTask(id).getName(), "Изменение не сохранено.");
+    }
+
+    @Test
+    void writeBehindJournalShouldKeepChangesAndHistoryAfterClose() {
+        FileBackedTaskManager writeBehindManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL, DurabilityPolicy.INTERVAL);
+        Task task = new Task(ids(), "Выпить кофе", "");
+        Task removedTask = new Task(ids(), "Выпить чай", "");
+        writeBehindManager.addTask(task);
+        writeBehindManager.addTask(removedTask);
+        writeBehindManager.getTask(task.getId());
+        writeBehindManager.removeTask(removedTask.getId());
+        writeBehindManager.close();
+
+        assertThrows(ManagerSaveException.class, () -> writeBehindManager.addTask(new Task(ids(), "Поздно", "")));
+        assertThrows(ManagerSaveException.class, () -> writeBehindManager.removeTask(task.getId()));
+        assertEquals(List.of(task.getId()), writeBehindManager.getTasksView().keySet().stream().toList(),
+                "Отклонённые изменения не должны применяться в памяти.");
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL);
+        assertEquals(List.of(task.getId()), newManager.getTasksView().keySet().stream().toList());
+        assertEquals(List.of(task.getId()), newManager.getHistory().stream().map(Task::getId).toList());
+        newManager.close();
+    }
+
+    @Test
+    void journalShouldBeCompactedInBackgroundWhenThresholdIsReached() {
+        FileBackedTaskManager journaledManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL);
+        journaledManager.setCompactionPolicy(new CompactionPolicy(512, 1.0));
+        int count = 200;
+
+        for (int i = 0; i < count; i++) {
+            Task task = new Task(ids(), "Задача " + i, "");
+            journaledManager.addTask(task);
+            if (i % 2 == 0) {
+                journaledManager.removeTask(task.getId());
+            }
+        }
+        journaledManager.close();
+        CompactionStats stats = journaledManager.getCompactionStats();
+
+        assertTrue(stats.compactions() > 0, "Сжатие не запускалось.");
+        assertEquals(0, stats.failures());
+        assertTrue(stats.totalBytesReclaimed() > 0, "Место не освобождено.");
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL);
+        assertEquals(count / 2, newManager.getTasksCount(), "Неверное количество элементов.");
+        newManager.close();
+    }
+
+    @Test
+    void loadShouldFinishCompactionInterruptedAfterMarkingJournalCompacted() throws IOException {
+        Task staleTask = new Task(ids(), "Старая задача", "");
+        taskManager.addTask(staleTask);
+        taskManager.close();
+        File journalFile = new File(taskManagerDataFile.getPath() + TaskJournal.FILE_SUFFIX);
+        File tempFile = new File(taskManagerDataFile.getPath() + AtomicDataFile.TEMP_SUFFIX);
+        Files.writeString(new File(journalFile.getPath() + TaskJournal.COMPACTED_SUFFIX).toPath(),
+                "REMOVE,TASK," + staleTask.getId() + "\n");
+        Files.writeString(tempFile.toPath(), "type,id,name,description,status,start_time,duration,epic\n"
+                + "TASK,5000,Новая задача,,NEW,,\n");
+        Files.writeString(journalFile.toPath(), "ADD,TASK,5001,Задача из журнала,,NEW,,\n");
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL);
+
+        assertEquals(List.of(5000, 5001), newManager.getTasksView().keySet().stream().sorted().toList());
+        assertFalse(tempFile.exists(), "Временный файл не удалён.");
+        newManager.close();
+    }
+
+    @Test
+    void loadShouldReplayRotatedJournalWhenCompactionWasInterrupted() throws IOException {
+        File journalFile = new File(taskManagerDataFile.getPath() + TaskJournal.FILE_SUFFIX);
+        File tempFile = new File(taskManagerDataFile.getPath() + AtomicDataFile.TEMP_SUFFIX);
+        Files.writeString(new File(journalFile.getPath() + TaskJournal.COMPACTING_SUFFIX).toPath(),
+                "ADD,TASK,6000,Первая,,NEW,,\nADD,TASK,6001,Вторая,,NEW,,\n");
+        Files.writeString(tempFile.toPath(), "type,id,name");
+        Files.writeString(journalFile.toPath(), "REMOVE,TASK,6000\n");
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.JOURNAL);
+
+        assertEquals(List.of(6001), newManager.getTasksView().keySet().stream().toList());
+        assertFalse(journalFile.exists() || tempFile.exists(), "Файлы сжатия не удалены.");
+        newManager.close();
+    }
+
+    @Test
+    void binaryFormatsShouldKeepNullTextFieldsAndStatus() {
+        for (StorageMode storageMode : new StorageMode[]{StorageMode.SNAPSHOT, StorageMode.PAGED}) {
+            File file = new File(taskManagerDataFile.getPath() + "." + storageMode);
+            file.deleteOnExit();
+            FileBackedTaskManager binaryManager = Managers.getFileBackedTaskManager(file, storageMode,
+                    DataFormat.BINARY);
+            Epic epic = new Epic(binaryManager.getIdGenerator(), "Эпик", null);
+            binaryManager.addEpic(epic);
+            Task task = new Task(binaryManager.getIdGenerator().nextId(), null, null, null, null, null);
+            binaryManager.addTask(task);
+            Task update = new Task(task.getId(), "x", null, null, null, null);
+            binaryManager.updateTask(update);
+            binaryManager.close();
+
+            FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(file, storageMode);
+            Task loadedTask = newManager.findTask(task.getId());
+
+            assertNull(newManager.findEpic(epic.getId()).getDescription(), "Описание эпика не null: " + storageMode);
+            assertEquals("x", loadedTask.getName(), "Название не сохранено: " + storageMode);
+            assertNull(loadedTask.getDescription(), "Описание не null: " + storageMode);
+            assertNull(loadedTask.getStatus(), "Статус не null: " + storageMode);
+            newManager.close();
+        }
+    }
+
+    @Test
+    void binaryFormatShouldKeepTasksWithDelimitersInTextAndHistory() {
+        FileBackedTaskManager binaryManager = Managers.getFileBackedTaskManager(taskManagerDataFile,
+                StorageMode.SNAPSHOT, DataFormat.BINARY);
+        Epic epic = new Epic(ids(), "Ремонт, этап 1", "Кухня\nи ванная");
+        binaryManager.addEpic(epic);
+        Subtask subtask = new Subtask(10_000, "Плитка", "Купить, уложить", Status.IN_PROGRESS,
+                LocalDateTime.of(2024, 3, 1, 10, 30), Duration.ofMinutes(90), epic.getId());
+        binaryManager.addSubtask(subtask);
+        Task task = new Task(ids(), "Без времени", "");
+        binaryManager.addTask(task);
+        binaryManager.getSubtask(subtask.getId());
+        binaryManager.getEpic(epic.getId());
+        binaryManager.close();
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile);
+        Subtask loadedSubtask = newManager.getSubtasksView().get(subtask.getId());
+
+        assertTrue(BinaryTaskFormat.isBinary(taskManagerDataFile), "Файл записан не в двоичном формате.");
+        assertEquals("Ремонт, этап 1", newManager.getEpicsView().get(epic.getId()).getName());
+        assertEquals("Кухня\nи ванная", newManager.getEpicsView().get(epic.getId()).getDescription());
+        assertEquals("Купить, уложить", loadedSubtask.getDescription());
+        assertEquals(subtask.getStartTime(), loadedSubtask.getStartTime());
+        assertEquals(subtask.getDuration(), loadedSubtask.getDuration());
+        assertEquals(Status.IN_PROGRESS, newManager.getEpicsView().get(epic.getId()).getStatus());
+        assertNull(newManager.getTasksView().get(task.getId()).getStartTime());
+        assertEquals(List.of(subtask.getId(), epic.getId()),
+                newManager.getHistory().stream().map(Task::getId).toList());
+        newManager.close();
+    }
+
+    @Test
+    void convertShouldWriteSmallerBinaryFileWithSameData() throws IOException {
+        Epic epic = new Epic(ids(), "Эпик", "Описание эпика");
+        taskManager.addEpic(epic);
+        for (int i = 0; i < 50; i++) {
+            taskManager.addSubtask(new Subtask(ids(), "Подзадача " + i, "Описание подзадачи", Status.NEW,
+                    LocalDateTime.of(2024, 1, 1, 0, 0).plusHours(i), Duration.ofMinutes(30), epic.getId()));
+        }
+        taskManager.close();
+        File binaryFile = File.createTempFile("testData", ".bin");
+
+        FileBackedTaskManager.convert(taskManagerDataFile, binaryFile, DataFormat.BINARY);
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(binaryFile);
+
+        assertTrue(binaryFile.length() < taskManagerDataFile.length(), "Двоичный файл не меньше CSV.");
+        assertEquals(taskManager.getSubtasksView().keySet(), newManager.getSubtasksView().keySet());
+        assertEquals(taskManager.getEpicsView().get(epic.getId()).getEndTime(),
+                newManager.getEpicsView().get(epic.getId()).getEndTime());
+        newManager.close();
+    }
+
+    @Test
+    void loadShouldRejectBinaryFileWithBrokenChecksum() throws IOException {
+        FileBackedTaskManager binaryManager = Managers.getFileBackedTaskManager(taskManagerDataFile,
+                StorageMode.SNAPSHOT, DataFormat.BINARY);
+        binaryManager.addTask(new Task(ids(), "Задача", "Описание"));
+        binaryManager.close();
+        byte[] data = Files.readAllBytes(taskManagerDataFile.toPath());
+        data[data.length - 8] ^= 1;
+        Files.write(taskManagerDataFile.toPath(), data);
+
+        assertThrows(ManagerLoadException.class, () -> FileBackedTaskManager.loadFromFile(taskManagerDataFile));
+    }
+
+    @Test
+    void largeCsvFileShouldBeLoadedInParallelChunksInFileOrder() throws IOException {
+        int epicCount = 100;
+        int subtasksPerEpic = 50;
+        String description = "Описание ".repeat(20);
+        StringBuilder sb = new StringBuilder("type,id,name,description,status,start_time,duration,epic");
+        for (int epicId = 1; epicId <= epicCount; epicId++) {
+            sb.append("\nEPIC,").append(epicId).append(",Эпик ").append(epicId).append(",,NEW");
+        }
+        int id = epicCount;
+        for (int epicId = 1; epicId <= epicCount; epicId++) {
+            for (int i = 0; i < subtasksPerEpic; i++) {
+                id++;
+                sb.append("\r\nSUBTASK,").append(id).append(",Подзадача,").append(description).append(",DONE,,,")
+                        .append(epicId);
+            }
+        }
+        sb.append("\n7,").append(id).append(",3\n");
+        taskManager.close();
+        Files.deleteIfExists(new File(taskManagerDataFile.getPath() + HistoryFile.FILE_SUFFIX).toPath());
+        Files.writeString(taskManagerDataFile.toPath(), sb.toString());
+        assertTrue(taskManagerDataFile.length() >= ParallelCsvLoader.MIN_PARALLEL_BYTES, "Файл слишком мал.");
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                new AtomicIdGenerator());
+
+        assertEquals(epicCount, newManager.getEpicsView().size(), "Неверное количество эпиков.");
+        assertEquals(epicCount * subtasksPerEpic, newManager.getSubtasksView().size(),
+                "Неверное количество подзадач.");
+        assertEquals(description, newManager.getSubtasksView().get(id).getDescription());
+        assertEquals(subtasksPerEpic, newManager.getEpicsView().get(7).getSubtaskIds().size());
+        assertEquals(Status.DONE, newManager.getEpicsView().get(epicCount).getStatus());
+        assertEquals(List.of(7, id, 3), newManager.getHistory().stream().map(Task::getId).toList());
+        newManager.close();
+    }
+
+    @Test
+    void loadShouldRestoreSnapshotInBulkAndReportDroppedRows() throws IOException {
+        taskManager.close();
+        Files.deleteIfExists(new File(taskManagerDataFile.getPath() + HistoryFile.FILE_SUFFIX).toPath());
+        Files.writeString(taskManagerDataFile.toPath(), String.join("\n",
+                "type,id,name,description,status,start_time,duration,epic",
+                "EPIC,7001,Эпик,,NEW",
+                "SUBTASK,7002,Первая,,DONE,01.01.2024 10:00,60,7001",
+                "SUBTASK,7003,Пересекается,,NEW,01.01.2024 10:30,60,7001",
+                "SUBTASK,7004,Без эпика,,NEW,,,7999",
+                "TASK,7005,Задача,,NEW,01.01.2024 11:00,30",
+                "TASK,7002,Повтор id,,NEW,,",
+                "SUBTASK,7006,Вторая,,IN_PROGRESS,01.01.2024 08:00,30,7001",
+                "7005,7001"));
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                new AtomicIdGenerator());
+        Epic epic = newManager.getEpicsView().get(7001);
+
+        assertEquals(List.of(
+                new RestoreConflict(7004, RestoreConflict.Reason.MISSING_EPIC, -1),
+                new RestoreConflict(7002, RestoreConflict.Reason.DUPLICATE_ID, 7002),
+                new RestoreConflict(7003, RestoreConflict.Reason.INTERSECTION, 7002)),
+                newManager.getLoadConflicts());
+        assertEquals(List.of(7002, 7006), epic.getSubtasks().stream().toList());
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 8, 0), epic.getStartTime());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 11, 0), epic.getEndTime());
+        assertEquals(List.of(7006, 7002, 7005), newManager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertEquals(List.of(7005, 7001), newManager.getHistory().stream().map(Task::getId).toList());
+        assertEquals(7007, newManager.getIdGenerator().nextId());
+        newManager.close();
+    }
+
+    @Test
+    void saveShouldReplaceDataFileAtomicallyAndKeepPreviousCopy() throws IOException {
+        Task firstTask = new Task(ids(), "Первая", "");
+        taskManager.addTask(firstTask);
+        byte[] firstVersion = Files.readAllBytes(taskManagerDataFile.toPath());
+        taskManager.addTask(new Task(ids(), "Вторая", ""));
+        File backupFile = new File(taskManagerDataFile.getPath() + AtomicDataFile.BACKUP_SUFFIX);
+
+        assertArrayEquals(firstVersion, Files.readAllBytes(backupFile.toPath()), "Нет копии прежней версии.");
+        assertFalse(new File(taskManagerDataFile.getPath() + AtomicDataFile.TEMP_SUFFIX).exists());
+        assertTrue(new String(firstVersion).contains("#crc32="), "Нет контрольной суммы.");
+    }
+
+    @Test
+    void loadShouldFallBackToBackupWhenChecksumDoesNotMatch() throws IOException {
+        Task firstTask = new Task(ids(), "Первая", "");
+        taskManager.addTask(firstTask);
+        taskManager.addTask(new Task(ids(), "Вторая", ""));
+        taskManager.close();
+        Files.deleteIfExists(new File(taskManagerDataFile.getPath() + HistoryFile.FILE_SUFFIX).toPath());
+        String content = Files.readString(taskManagerDataFile.toPath());
+        Files.writeString(taskManagerDataFile.toPath(), content.replace("Вторая", "Вторыя"));
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile);
+
+        assertEquals(List.of(firstTask.getId()), newManager.getTasksView().keySet().stream().toList());
+        assertTrue(AtomicDataFile.isIntact(taskManagerDataFile), "Файл данных не восстановлен.");
+        assertEquals(List.of(new RestoreConflict(-1, RestoreConflict.Reason.RESTORED_FROM_BACKUP, -1)),
+                newManager.getLoadConflicts(), "Замена копией .bak не сообщена.");
+        newManager.close();
+    }
+
+    @Test
+    void loadShouldNotAcceptTruncatedDataFile() throws IOException {
+        Task firstTask = new Task(ids(), "Первая", "");
+        taskManager.addTask(firstTask);
+        taskManager.addTask(new Task(ids(), "Вторая", ""));
+        taskManager.close();
+        Files.deleteIfExists(new File(taskManagerDataFile.getPath() + HistoryFile.FILE_SUFFIX).toPath());
+        String content = Files.readString(taskManagerDataFile.toPath());
+        Files.writeString(taskManagerDataFile.toPath(), content.substring(0, content.indexOf("Вторая")));
+
+        assertFalse(AtomicDataFile.isIntact(taskManagerDataFile), "Обрезанный файл принят за целый.");
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile);
+
+        assertEquals(List.of(firstTask.getId()), newManager.getTasksView().keySet().stream().toList());
+        assertEquals(RestoreConflict.Reason.RESTORED_FROM_BACKUP, newManager.getLoadConflicts().getFirst().reason(),
+                "Замена копией .bak не сообщена.");
+        newManager.close();
+    }
+
+    @Test
+    void loadShouldFailWhenDataFileAndBackupAreCorrupted() throws IOException {
+        taskManager.addTask(new Task(ids(), "Задача", ""));
+        taskManager.close();
+        String content = Files.readString(taskManagerDataFile.toPath());
+        Files.writeString(taskManagerDataFile.toPath(), content.replace("Задача", "Задачи"));
+
+        assertThrows(ManagerLoadException.class, () -> FileBackedTaskManager.loadFromFile(taskManagerDataFile));
+    }
+
+    @Test
+    void pagedModeShouldRewriteOnlyPagesOfChangedRecord() {
+        taskManager.addTask(new Task(ids(), "Из CSV", ""));
+        taskManager.close();
+        FileBackedTaskManager pagedManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.PAGED);
+        for (int i = 0; i < 500; i++) {
+            pagedManager.addTask(new Task(ids(), "Задача " + i, "Описание задачи " + i));
+        }
+        Task task = pagedManager.getTasksView().values().iterator().next();
+        PagedTaskFile pagedFile = pagedManager.getPagedFile();
+        long writesBefore = pagedFile.getPageWrites();
+        int pagesBefore = pagedFile.getPageCount();
+
+        task.setStatus(Status.DONE);
+        pagedManager.updateTask(task);
+        pagedManager.removeTask(task.getId());
+        pagedManager.addTask(new Task(ids(), "Новая", ""));
+
+        assertTrue(PagedTaskFile.isPaged(taskManagerDataFile), "Файл не переведён в страничный формат.");
+        assertTrue(pagedFile.getPageWrites() - writesBefore <= 4, "Переписано больше страниц, чем изменено.");
+        assertTrue(pagedFile.getPageCount() <= pagesBefore + 1, "Освобождённые страницы не используются повторно.");
+        pagedManager.close();
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.PAGED);
+        assertEquals(501, newManager.getTasksCount(), "Неверное количество элементов.");
+        assertFalse(newManager.containsTask(task.getId()), "Удалённая задача восстановлена.");
+        newManager.close();
+    }
+
+    @Test
+    void pagedModeShouldDropRecordsRemovedTogetherWithEpic() {
+        FileBackedTaskManager pagedManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.PAGED, DurabilityPolicy.NONE);
+        Epic epic = new Epic(ids(), "Эпик", "Описание ".repeat(100));
+        pagedManager.addEpic(epic);
+        for (int i = 0; i < 3; i++) {
+            pagedManager.addSubtask(new Subtask(ids(), "Подзадача " + i, "", Status.NEW, epic.getId()));
+        }
+        Epic keptEpic = new Epic(ids(), "Оставшийся", "");
+        pagedManager.addEpic(keptEpic);
+        Subtask keptSubtask = new Subtask(ids(), "Оставшаяся", "", Status.DONE, keptEpic.getId());
+        pagedManager.addSubtask(keptSubtask);
+        pagedManager.removeEpic(epic.getId());
+        pagedManager.close();
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(taskManagerDataFile,
+                StorageMode.PAGED);
+
+        assertEquals(List.of(keptEpic.getId()), newManager.getEpicsView().keySet().stream().toList());
+        assertEquals(List.of(keptSubtask.getId()), newManager.getSubtasksView().keySet().stream().toList());
+        assertEquals(Status.DONE, newManager.getEpicsView().get(keptEpic.getId()).getStatus());
+        newManager.close();
+    }
+}
@@ -3,6 +3,7 @@ package services;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import tasks.Epic;
+import tasks.IdGenerator;
 import tasks.Status;
 import tasks.Subtask;
 import tasks.Task;
@@ -15,15 +16,19 @@ class InMemoryHistoryManagerTest {
     static Epic lastEpic;
     static Subtask lastSubtask;
 
+    private IdGenerator ids() {
+        return taskManager.getIdGenerator();
+    }
+
     @BeforeEach
     public void addTask() {
-        lastTask = new Task("Купить билеты для отпуска", "");
+        lastTask = new Task(ids(), "Купить билеты для отпуска", "");
         taskManager.addTask(lastTask);
     }
 
     @BeforeEach
     public void addEpic() {
-        lastEpic = new Epic("Завершить переезд", "Управиться за неделю");
+        lastEpic = new Epic(ids(), "Завершить переезд", "Управиться за неделю");
         taskManager.addEpic(lastEpic);
     }
 
@@ -31,9 +36,9 @@ class InMemoryHistoryManagerTest {
     public void addSubtasks() {
         int epicId = lastEpic.getId();
         Subtask[] subtasks = new Subtask[]{
-                new Subtask("Собрать коробки", "", Status.NEW, epicId),
-                new Subtask("Упаковать кошку", "", Status.IN_PROGRESS, epicId),
-                new Subtask("Сказать прощальные слова", "", Status.NEW, epicId)
+                new Subtask(ids(), "Собрать коробки", "", Status.NEW, epicId),
+                new Subtask(ids(), "Упаковать кошку", "", Status.IN_PROGRESS, epicId),
+                new Subtask(ids(), "Сказать прощальные слова", "", Status.NEW, epicId)
         };
         for (Subtask subtask : subtasks) {
             taskManager.addSubtask(subtask);
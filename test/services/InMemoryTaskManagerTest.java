@@ -3,10 +3,16 @@ package services;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import tasks.AtomicIdGenerator;
 import tasks.Epic;
 import tasks.Status;
 import tasks.Subtask;
 import tasks.Task;
+import tasks.TimeSlot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,13 +24,14 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
 
     InMemoryTaskManagerTest() {
         super.taskManager = new InMemoryTaskManager(Managers.getDefaultHistoryManager());
+        super.taskManager.setEpicAggregatesVerification(true);
     }
 
     @BeforeEach
     public void addTasks() {
         Task[] tasks = new Task[]{
-                new Task("Сходить за грибами", "Выйти не позднее 7.00"),
-                new Task("Купить билеты для отпуска", "")
+                new Task(ids(), "Сходить за грибами", "Выйти не позднее 7.00"),
+                new Task(ids(), "Купить билеты для отпуска", "")
         };
         for (Task task : tasks) {
             taskManager.addTask(task);
@@ -35,8 +42,8 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
     @BeforeEach
     public void addEpics() {
         Epic[] epics = new Epic[]{
-                new Epic("Важный эпик 1", "Описание Эпика1"),
-                new Epic("Завершить переезд", "Управиться за неделю")
+                new Epic(ids(), "Важный эпик 1", "Описание Эпика1"),
+                new Epic(ids(), "Завершить переезд", "Управиться за неделю")
         };
         for (Epic epic : epics) {
             taskManager.addEpic(epic);
@@ -48,9 +55,9 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
     public void addSubtasksToLastEpic() {
         int epicId = lastEpic.getId();
         Subtask[] subtasks = new Subtask[]{
-                new Subtask("Собрать коробки", "", Status.NEW, epicId),
-                new Subtask("Упаковать кошку", "", Status.IN_PROGRESS, epicId),
-                new Subtask("Сказать прощальные слова", "", Status.NEW, epicId)
+                new Subtask(ids(), "Собрать коробки", "", Status.NEW, epicId),
+                new Subtask(ids(), "Упаковать кошку", "", Status.IN_PROGRESS, epicId),
+                new Subtask(ids(), "Сказать прощальные слова", "", Status.NEW, epicId)
         };
         for (Subtask subtask : subtasks) {
             taskManager.addSubtask(subtask);
@@ -68,8 +75,8 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
     @Test
     void epicAndSubtaskCanNotBeAddedToTasks() {
         int before = taskManager.getTasks().size();
-        taskManager.addTask(new Epic("NEW", ""));
-        taskManager.addTask(new Subtask("NEW", "", Status.NEW, lastEpic.getId()));
+        taskManager.addTask(new Epic(ids(), "NEW", ""));
+        taskManager.addTask(new Subtask(ids(), "NEW", "", Status.NEW, lastEpic.getId()));
         int after = taskManager.getTasks().size();
         assertEquals(before, after);
     }
@@ -77,8 +84,8 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
     @Test
     void subtaskCanNotUseTaskOrSubtaskId() {
         int before = taskManager.getSubtasks().size();
-        taskManager.addSubtask(new Subtask("NEW", "", Status.NEW, lastTask.getId()));
-        taskManager.addSubtask(new Subtask("NEW", "", Status.NEW, lastSubtask.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "NEW", "", Status.NEW, lastTask.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "NEW", "", Status.NEW, lastSubtask.getId()));
         int after = taskManager.getSubtasks().size();
         assertEquals(before, after);
     }
@@ -105,4 +112,67 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
         assertTrue(taskManager.getEpics().isEmpty(), "Не пусто.");
         assertTrue(taskManager.getSubtasks().isEmpty(), "Не пусто.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void slotIndexedManagerShouldDetectIntersectionsAndFindAlignedFreeSlots() {
+        TaskManager manager = Managers.getSlotIndexedTaskManager(15);
+        Task task = new Task(ids(), "Task1", "", "NEW", "08.05.2024 09:05", 50);
+        manager.addTask(task);
+        manager.addTask(new Task(ids(), "Task2", "", "NEW", "08.05.2024 23:30", 60));
+
+        assertTrue(manager.isIntersectedTask(new Task(ids(), "Task3", "", "NEW", "08.05.2024 09:50", 30)));
+        assertFalse(manager.isIntersectedTask(new Task(ids(), "Task4", "", "NEW", "08.05.2024 09:55", 30)));
+        assertTrue(manager.isIntersectedTask(new Task(ids(), "Task5", "", "NEW", "09.05.2024 00:15", 30)));
+
+        LocalDateTime from = LocalDateTime.parse("08.05.2024 09:00", Task.DATE_TIME_FORMATTER);
+        LocalDateTime to = LocalDateTime.parse("09.05.2024 01:00", Task.DATE_TIME_FORMATTER);
+        assertEquals(List.of(
+                new TimeSlot(from.plusHours(1), from.plusMinutes(870)),
+                new TimeSlot(from.plusMinutes(930), to)
+        ), manager.findFreeSlots(from, to, Duration.ofMinutes(30)));
+
+        manager.removeTask(task.getId());
+        assertEquals(from, manager.findFreeSlots(from, to, Duration.ofMinutes(30)).getFirst().getStartTime());
+    }
+
+    @Test
+    void managersWithOwnIdGeneratorsShouldAllocateIdsIndependently() {
+        TaskManager firstBoard = Managers.getTaskManager(new AtomicIdGenerator());
+        TaskManager secondBoard = Managers.getTaskManager(new AtomicIdGenerator());
+
+        int firstId = firstBoard.addTask(new Task(firstBoard.getIdGenerator(), "Task"));
+        int secondId = secondBoard.addTask(new Task(secondBoard.getIdGenerator(), "Task"));
+        assertEquals(1, firstId);
+        assertEquals(1, secondId);
+
+        int blockStart = firstBoard.getIdGenerator().reserve(100);
+        assertEquals(firstId + 1, blockStart);
+        assertEquals(blockStart + 100, firstBoard.getIdGenerator().nextId());
+
+        secondBoard.addTask(new Task(500, "Task", ""));
+        assertEquals(501, secondBoard.getIdGenerator().nextId());
+    }
+
+    @Test
+    void threadSafeWrapperShouldReturnSnapshotsTakenUnderLock() {
+        TaskManager manager = Managers.getThreadSafeTaskManager(new InMemoryTaskManager(
+                Managers.getDefaultHistoryManager()));
+        Epic epic = new Epic(manager.getIdGenerator(), "Epic", "");
+        manager.addEpic(epic);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 10, 0);
+        Subtask subtask = new Subtask(manager.getIdGenerator(), "Subtask", "", Status.DONE, start,
+                Duration.ofMinutes(30), epic.getId());
+        manager.addSubtask(subtask);
+
+        Epic snapshot = manager.getEpic(epic.getId());
+        assertNotSame(epic, snapshot, "Отдан живой эпик.");
+        assertEquals(Status.DONE, snapshot.getStatus());
+        assertEquals(start.plusMinutes(30), snapshot.getEndTime());
+        assertTrue(snapshot.getSubtasks().contains(subtask.getId()));
+
+        manager.removeSubtask(subtask.getId());
+        assertEquals(Status.DONE, snapshot.getStatus(), "Снимок изменился вместе с эпиком.");
+        assertTrue(snapshot.getSubtasks().contains(subtask.getId()), "Снимок изменился вместе с эпиком.");
+        assertNotSame(epic, manager.getEpicsView().get(epic.getId()), "Представление отдаёт живой эпик.");
+    }
+}
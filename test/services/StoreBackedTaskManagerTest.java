@@ -0,0 +1,173 @@
+package services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasks.Epic;
+import tasks.Status;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StoreBackedTaskManagerTest extends TaskManagerTest<StoreBackedTaskManager> {
+    File storeFile;
+
+    @BeforeEach
+    public void init() {
+        try {
+            storeFile = File.createTempFile("testStore", ".db");
+            super.taskManager = Managers.getStoreBackedTaskManager(new KeyValueTaskStore(storeFile));
+            super.taskManager.setEpicAggregatesVerification(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @AfterEach
+    public void closeStore() {
+        taskManager.close();
+    }
+
+    @Test
+    void keyValueStoreShouldKeepDataAndHistoryBetweenRuns() {
+        Epic epic = new Epic(ids(), "Epic", "");
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask(ids(), "Subtask", "", Status.DONE, epic.getId());
+        taskManager.addSubtask(subtask);
+        Task task = new Task(ids(), "Task", "");
+        taskManager.addTask(task);
+        taskManager.getTask(task.getId());
+        taskManager.getEpic(epic.getId());
+        taskManager.close();
+
+        try (StoreBackedTaskManager newManager = StoreBackedTaskManager.loadFromStore(
+                new KeyValueTaskStore(storeFile))) {
+            assertEquals(epic, newManager.findEpic(epic.getId()), "Эпик не восстановлен.");
+            assertEquals(subtask, newManager.findSubtask(subtask.getId()), "Подзадача не восстановлена.");
+            assertEquals(task, newManager.findTask(task.getId()), "Задача не восстановлена.");
+            assertEquals(Status.DONE, newManager.findEpic(epic.getId()).getStatus(), "Статус эпика не пересчитан.");
+            assertEquals(List.of(task, epic), newManager.getHistory(), "История не восстановлена.");
+            assertTrue(newManager.getLoadConflicts().isEmpty(), "Не должно быть конфликтов.");
+        }
+    }
+
+    @Test
+    void keyValueStoreShouldDeleteRecordsRemovedTogetherWithEpic() {
+        Epic epic = new Epic(ids(), "Epic", "");
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask(ids(), "Subtask", "", Status.NEW, epic.getId());
+        taskManager.addSubtask(subtask);
+        taskManager.removeEpic(epic.getId());
+
+        assertNull(taskManager.getStore().find(epic.getId()), "Эпик остался в хранилище.");
+        assertNull(taskManager.getStore().find(subtask.getId()), "Подзадача осталась в хранилище.");
+    }
+
+    @Test
+    void keyValueStoreShouldFindRecordById() {
+        Task task = new Task(ids(), "Task", "Description");
+        taskManager.addTask(task);
+
+        assertEquals(task, taskManager.getStore().find(task.getId()), "Запись не найдена по id.");
+    }
+
+    @Test
+    void keyValueStoreShouldIgnoreTornWalEntry() throws IOException {
+        Task task = new Task(ids(), "Task", "");
+        taskManager.addTask(task);
+        taskManager.close();
+        File walFile = new File(storeFile.getPath() + KeyValueTaskStore.WAL_SUFFIX);
+        Files.write(walFile.toPath(), new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (StoreBackedTaskManager newManager = StoreBackedTaskManager.loadFromStore(
+                new KeyValueTaskStore(storeFile))) {
+            assertEquals(task, newManager.findTask(task.getId()), "Задача не восстановлена.");
+            assertEquals(1, newManager.getTasksCount(), "Неверное количество задач.");
+        }
+        assertEquals(0, walFile.length(), "Журнал транзакций не очищен.");
+    }
+
+    @Test
+    void csvStoreShouldKeepDataBetweenRuns() throws IOException {
+        File csvFile = File.createTempFile("testStore", ".csv");
+        Epic epic = new Epic(ids(), "Epic", "");
+        Subtask subtask;
+        try (StoreBackedTaskManager csvManager = Managers.getStoreBackedTaskManager(new CsvTaskStore(csvFile))) {
+            csvManager.addEpic(epic);
+            subtask = new Subtask(ids(), "Subtask", "", Status.IN_PROGRESS, epic.getId());
+            csvManager.addSubtask(subtask);
+            csvManager.getSubtask(subtask.getId());
+        }
+
+        try (StoreBackedTaskManager newManager = StoreBackedTaskManager.loadFromStore(
+                new CsvTaskStore(csvFile))) {
+            assertEquals(subtask, newManager.findSubtask(subtask.getId()), "Подзадача не восстановлена.");
+            assertEquals(Status.IN_PROGRESS, newManager.findEpic(epic.getId()).getStatus(),
+                    "Статус эпика не пересчитан.");
+            assertEquals(List.of(subtask), newManager.getHistory(), "История не восстановлена.");
+        }
+    }
+
+    @Test
+    void operationsThatChangeNothingShouldNotReachStore() throws IOException {
+        CountingStore store = new CountingStore(new KeyValueTaskStore(File.createTempFile("testStore", ".db")));
+        try (StoreBackedTaskManager manager = StoreBackedTaskManager.loadFromStore(store)) {
+            Task task = new Task(manager.getIdGenerator(), "Task", "");
+            manager.addTask(task);
+            int commits = store.commits;
+
+            manager.addTask(task);
+            manager.removeTask(task.getId() + 100);
+            manager.clearEpics();
+            manager.clearSubtasks();
+
+            assertEquals(commits, store.commits, "Пустые операции дошли до хранилища.");
+            manager.removeTask(task.getId());
+            assertEquals(commits + 1, store.commits, "Удаление не дошло до хранилища.");
+        }
+    }
+
+    private static final class CountingStore implements TaskStore {
+        private final TaskStore store;
+        private int commits;
+
+        CountingStore(TaskStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public List<Integer> load(Consumer<Task> sink) {
+            return store.load(sink);
+        }
+
+        @Override
+        public Task find(int id) {
+            return store.find(id);
+        }
+
+        @Override
+        public void commit(Transaction transaction) {
+            commits++;
+            store.commit(transaction);
+        }
+
+        @Override
+        public void recordView(int id, Supplier<List<Integer>> history) {
+            store.recordView(id, history);
+        }
+
+        @Override
+        public void close() {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package services;
+
+import org.junit.jupiter.api.Test;
+import tasks.Task;
+import tasks.Type;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskIndexTest {
+
+    @Test
+    void indexShouldBehaveLikeTypedHashMapsUnderRandomOperations() {
+        TaskIndex index = new TaskIndex(false);
+        Map<Integer, Task> tasks = index.view(Type.TASK);
+        Map<Integer, Task> epics = index.view(Type.EPIC);
+        Map<Integer, Task> expectedTasks = new HashMap<>();
+        Map<Integer, Task> expectedEpics = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(2_000);
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                Task task = new Task(id, "Task" + id, "");
+                if (id % 2 == 0) {
+                    tasks.put(id, task);
+                    expectedTasks.put(id, task);
+                } else {
+                    epics.put(id, task);
+                    expectedEpics.put(id, task);
+                }
+            } else if (operation < 9) {
+                assertEquals(expectedTasks.remove(id), tasks.remove(id));
+                assertEquals(expectedEpics.remove(id), epics.remove(id));
+            } else if (random.nextInt(50) == 0) {
+                tasks.clear();
+                expectedTasks.clear();
+            }
+            assertEquals(expectedTasks.get(id), tasks.get(id));
+            assertEquals(expectedEpics.containsKey(id), epics.containsKey(id));
+        }
+
+        assertEquals(expectedTasks, tasks);
+        assertEquals(expectedEpics, epics);
+        assertEquals(expectedEpics.keySet().stream().sorted().toList(),
+                index.<Task>page(Type.EPIC, Integer.MIN_VALUE, 0).stream().map(Task::getId).toList());
+        assertEquals(expectedTasks.keySet().stream().sorted().filter(id -> id > 1000).limit(10).toList(),
+                index.<Task>page(Type.TASK, 1000, 10).stream().map(Task::getId).toList());
+        assertEquals(expectedEpics.size(), index.size(Type.EPIC));
+        expectedEpics.keySet().forEach(id -> assertEquals(Type.EPIC, index.getType(id)));
+    }
+
+    @Test
+    void pageShouldReturnTasksOfTypeInIdOrderAfterCursor() {
+        TaskIndex index = new TaskIndex(false);
+        Map<Integer, Task> tasks = index.view(Type.TASK);
+        Map<Integer, Task> epics = index.view(Type.EPIC);
+        for (int id : new int[]{40, 10, 30, 20, 50}) {
+            tasks.put(id, new Task(id, "Task" + id, ""));
+        }
+        epics.put(25, new Task(25, "Epic", ""));
+        tasks.remove(30);
+
+        List<Integer> firstPage = index.<Task>page(Type.TASK, Integer.MIN_VALUE, 2).stream().map(Task::getId).toList();
+        List<Integer> nextPage = index.<Task>page(Type.TASK, 20, 0).stream().map(Task::getId).toList();
+
+        assertEquals(List.of(10, 20), firstPage);
+        assertEquals(List.of(40, 50), nextPage);
+        assertEquals(List.of(25), index.<Task>page(Type.EPIC, 0, 0).stream().map(Task::getId).toList());
+    }
+
+    @Test
+    void putShouldRejectIdOfAnotherType() {
+        TaskIndex index = new TaskIndex(false);
+        Map<Integer, Task> tasks = index.view(Type.TASK);
+        Map<Integer, Task> epics = index.view(Type.EPIC);
+        Task epic = new Task(7, "Epic", "");
+        epics.put(7, epic);
+
+        assertThrows(IllegalArgumentException.class, () -> tasks.put(7, new Task(7, "Task", "")),
+                "Эпик не должен превращаться в задачу.");
+        assertThrows(IllegalArgumentException.class, () -> tasks.putIfAbsent(7, new Task(7, "Task", "")));
+        assertSame(epic, epics.get(7), "Эпик должен остаться на месте.");
+        assertEquals(Type.EPIC, index.getType(7));
+        assertEquals(0, index.size(Type.TASK));
+        assertTrue(index.<Task>page(Type.TASK, 0, 0).isEmpty(), "Id не должен попасть в страницы задач.");
+    }
+}
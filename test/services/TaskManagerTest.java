@@ -2,20 +2,48 @@ package services;
 
 import org.junit.jupiter.api.Test;
 import tasks.Epic;
+import tasks.IdGenerator;
 import tasks.Status;
 import tasks.Subtask;
 import tasks.Task;
+import tasks.TimeSlot;
+import tasks.Type;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 abstract class TaskManagerTest<T extends TaskManager> {
     protected T taskManager;
 
+    protected IdGenerator ids() {
+        return taskManager.getIdGenerator();
+    }
+
+    @Test
+    public void versionsShouldGrowOnlyForChangedCollections() {
+        Epic epic = new Epic(ids(), "Epic", "");
+        taskManager.addEpic(epic);
+        long taskVersion = taskManager.getVersion(Type.TASK);
+        long epicVersion = taskManager.getVersion(Type.EPIC);
+        long historyVersion = taskManager.getHistoryVersion();
+
+        taskManager.addSubtask(new Subtask(ids(), "Subtask", "", Status.DONE, epic.getId()));
+
+        assertEquals(taskVersion, taskManager.getVersion(Type.TASK), "Версия задач не должна меняться.");
+        assertTrue(taskManager.getVersion(Type.EPIC) > epicVersion, "Агрегаты эпика изменились.");
+        assertEquals(taskManager.getVersion(), taskManager.getVersion(Type.SUBTASK));
+        assertEquals(historyVersion, taskManager.getHistoryVersion(), "История не менялась.");
+        taskManager.getEpic(epic.getId());
+        assertTrue(taskManager.getHistoryVersion() > historyVersion, "Просмотр меняет историю.");
+    }
+
     @Test
     public void epicStatusShouldBeNewWithoutSubtasks() {
-        Epic epic = new Epic("Epic", "");
+        Epic epic = new Epic(ids(), "Epic", "");
         taskManager.addEpic(epic);
 
         assertEquals(Status.NEW, taskManager.getEpic(epic.getId()).getStatus());
@@ -23,40 +51,40 @@ abstract class TaskManagerTest<T extends TaskManager> {
 
     @Test
     public void epicStatusShouldBeNewWithAllNewSubtasks() {
-        Epic epic = new Epic("Epic", "");
+        Epic epic = new Epic(ids(), "Epic", "");
         taskManager.addEpic(epic);
-        taskManager.addSubtask(new Subtask("Subtask1", "", Status.NEW, epic.getId()));
-        taskManager.addSubtask(new Subtask("Subtask2", "", Status.NEW, epic.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "Subtask1", "", Status.NEW, epic.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "Subtask2", "", Status.NEW, epic.getId()));
 
         assertEquals(Status.NEW, taskManager.getEpic(epic.getId()).getStatus());
     }
 
     @Test
     public void epicStatusShouldBeDoneWithAllDoneSubtasks() {
-        Epic epic = new Epic("Epic", "");
+        Epic epic = new Epic(ids(), "Epic", "");
         taskManager.addEpic(epic);
-        taskManager.addSubtask(new Subtask("Subtask1", "", Status.DONE, epic.getId()));
-        taskManager.addSubtask(new Subtask("Subtask2", "", Status.DONE, epic.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "Subtask1", "", Status.DONE, epic.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "Subtask2", "", Status.DONE, epic.getId()));
 
         assertEquals(Status.DONE, taskManager.getEpic(epic.getId()).getStatus());
     }
 
     @Test
     public void epicStatusShouldBeInProgressWithNewAndDoneSubtasks() {
-        Epic epic = new Epic("Epic", "");
+        Epic epic = new Epic(ids(), "Epic", "");
         taskManager.addEpic(epic);
-        taskManager.addSubtask(new Subtask("Subtask1", "", Status.NEW, epic.getId()));
-        taskManager.addSubtask(new Subtask("Subtask2", "", Status.DONE, epic.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "Subtask1", "", Status.NEW, epic.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "Subtask2", "", Status.DONE, epic.getId()));
 
         assertEquals(Status.IN_PROGRESS, taskManager.getEpic(epic.getId()).getStatus());
     }
 
     @Test
     public void epicStatusShouldBeInProgressWithInProgressSubtasks() {
-        Epic epic = new Epic("Epic", "");
+        Epic epic = new Epic(ids(), "Epic", "");
         taskManager.addEpic(epic);
-        taskManager.addSubtask(new Subtask("Subtask1", "", Status.IN_PROGRESS, epic.getId()));
-        taskManager.addSubtask(new Subtask("Subtask2", "", Status.IN_PROGRESS, epic.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "Subtask1", "", Status.IN_PROGRESS, epic.getId()));
+        taskManager.addSubtask(new Subtask(ids(), "Subtask2", "", Status.IN_PROGRESS, epic.getId()));
 
         assertEquals(Status.IN_PROGRESS, taskManager.getEpic(epic.getId()).getStatus());
     }
@@ -64,26 +92,102 @@ abstract class TaskManagerTest<T extends TaskManager> {
     @Test
     public void shouldBeImpossibleToAddTaskWhenTheDatesIntersects() {
         taskManager.clearAllData();
-        taskManager.addTask(new Task("Task1", "", "NEW", "08.05.2024 08:00", 60));
-        taskManager.addTask(new Task("Task2", "", "NEW", "08.05.2024 07:00", 60));
-        taskManager.addTask(new Task("Task3", "", "NEW", "08.05.2024 06:00", 60));
-        taskManager.addTask(new Task("Task4", "", "NEW", "08.05.2024 05:00", 60));
+        taskManager.addTask(new Task(ids(), "Task1", "", "NEW", "08.05.2024 08:00", 60));
+        taskManager.addTask(new Task(ids(), "Task2", "", "NEW", "08.05.2024 07:00", 60));
+        taskManager.addTask(new Task(ids(), "Task3", "", "NEW", "08.05.2024 06:00", 60));
+        taskManager.addTask(new Task(ids(), "Task4", "", "NEW", "08.05.2024 05:00", 60));
 
         int prioritizedTasksCount = taskManager.getPrioritizedTasks().size();
 
-        taskManager.addTask(new Task("IntersectedTask5", "", "NEW", "08.05.2024 05:00", 60));
-        taskManager.addTask(new Task("IntersectedTask6", "", "NEW", "08.05.2024 07:30", 60));
+        taskManager.addTask(new Task(ids(), "IntersectedTask5", "", "NEW", "08.05.2024 05:00", 60));
+        taskManager.addTask(new Task(ids(), "IntersectedTask6", "", "NEW", "08.05.2024 07:30", 60));
 
         assertEquals(prioritizedTasksCount, taskManager.getTasks().size());
         assertEquals(prioritizedTasksCount, taskManager.getPrioritizedTasks().size());
     }
 
+    @Test
+    public void taskUpdateShouldNotIntersectWithItselfAndShouldReleaseOldTime() {
+        taskManager.clearAllData();
+        Task task = new Task(ids(), "Task1", "", "NEW", "08.05.2024 08:00", 60);
+        taskManager.addTask(task);
+        taskManager.addTask(new Task(ids(), "Task2", "", "NEW", "08.05.2024 10:00", 60));
+
+        Task movedTask = new Task(task.getId(), "Task1", "", Status.NEW,
+                task.getStartTime().plusMinutes(30), task.getDuration());
+        assertFalse(taskManager.isIntersectedTask(movedTask));
+        taskManager.updateTask(movedTask);
+
+        assertFalse(taskManager.isIntersectedTask(new Task(ids(), "Task3", "", "NEW", "08.05.2024 07:30", 60)));
+        assertTrue(taskManager.isIntersectedTask(new Task(ids(), "Task4", "", "NEW", "08.05.2024 09:20", 60)));
+        assertEquals(2, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    public void freeSlotsShouldBeGapsBetweenScheduledTasks() {
+        taskManager.clearAllData();
+        taskManager.addTask(new Task(ids(), "Task1", "", "NEW", "08.05.2024 09:00", 60));
+        taskManager.addTask(new Task(ids(), "Task2", "", "NEW", "08.05.2024 10:30", 30));
+        taskManager.addTask(new Task(ids(), "Task3", "", "NEW", "08.05.2024 11:15", 60));
+        LocalDateTime from = LocalDateTime.parse("08.05.2024 08:00", Task.DATE_TIME_FORMATTER);
+        LocalDateTime to = LocalDateTime.parse("08.05.2024 13:00", Task.DATE_TIME_FORMATTER);
+
+        List<TimeSlot> freeSlots = taskManager.findFreeSlots(from, to, Duration.ofMinutes(30));
+
+        assertEquals(List.of(
+                new TimeSlot(from, from.plusHours(1)),
+                new TimeSlot(from.plusHours(2), from.plusMinutes(150)),
+                new TimeSlot(from.plusMinutes(255), to)
+        ), freeSlots);
+    }
+
+    @Test
+    public void scheduleEarliestShouldUseFirstGapThatFitsDuration() {
+        taskManager.clearAllData();
+        taskManager.addTask(new Task(ids(), "Task1", "", "NEW", "08.05.2024 09:00", 60));
+        taskManager.addTask(new Task(ids(), "Task2", "", "NEW", "08.05.2024 10:30", 30));
+        taskManager.addTask(new Task(ids(), "Task3", "", "NEW", "08.05.2024 11:30", 60));
+        LocalDateTime notBefore = LocalDateTime.parse("08.05.2024 09:15", Task.DATE_TIME_FORMATTER);
+
+        Task shortTask = new Task(ids(), "Short", "", Status.NEW);
+        shortTask.setDuration(Duration.ofMinutes(30));
+        Task longTask = new Task(ids(), "Long", "", Status.NEW);
+        longTask.setDuration(Duration.ofMinutes(45));
+        Epic epic = new Epic(ids(), "Epic", "");
+        taskManager.addEpic(epic);
+        Subtask subtask = new Subtask(ids(), "Subtask", "", Status.NEW, epic.getId());
+        subtask.setDuration(Duration.ofMinutes(15));
+
+        assertEquals(shortTask.getId(), taskManager.scheduleEarliest(shortTask, notBefore));
+        assertEquals(notBefore.plusMinutes(45), shortTask.getStartTime());
+        assertEquals(longTask.getId(), taskManager.scheduleEarliest(longTask, notBefore));
+        assertEquals(notBefore.plusMinutes(195), longTask.getStartTime());
+        assertEquals(subtask.getId(), taskManager.scheduleEarliest(subtask, notBefore));
+        assertEquals(notBefore.plusMinutes(105), subtask.getStartTime());
+        assertEquals(subtask.getStartTime(), taskManager.getEpicsView().get(epic.getId()).getStartTime());
+        assertEquals(-1, taskManager.scheduleEarliest(new Task(ids(), "Без длительности"), notBefore));
+    }
+
+    @Test
+    public void scheduleEarliestShouldKeepStartTimeWhenAddIsRejected() {
+        LocalDateTime notBefore = LocalDateTime.parse("08.05.2024 09:00", Task.DATE_TIME_FORMATTER);
+        Subtask orphan = new Subtask(ids(), "Orphan", "", Status.NEW, null, Duration.ofMinutes(30), -1);
+        Task task = new Task(ids(), "Task", "", Status.NEW, notBefore.minusDays(1), Duration.ofMinutes(30));
+        taskManager.addTask(task);
+        LocalDateTime startTime = task.getStartTime();
+
+        assertEquals(-1, taskManager.scheduleEarliest(orphan, notBefore), "Эпика нет.");
+        assertNull(orphan.getStartTime(), "Время начала не должно меняться.");
+        assertEquals(-1, taskManager.scheduleEarliest(task, notBefore), "Задача уже добавлена.");
+        assertEquals(startTime, task.getStartTime(), "Время начала не должно меняться.");
+    }
+
     @Test
     public void prioritizedTasksShouldBeEmptyWhenAddsTasksWithoutStartTime() {
         taskManager.clearAllData();
-        taskManager.addTask(new Task("Task1", "", Status.NEW));
-        taskManager.addTask(new Task("Task2", "", Status.IN_PROGRESS));
-        taskManager.addTask(new Task("Task3", "", Status.DONE));
+        taskManager.addTask(new Task(ids(), "Task1", "", Status.NEW));
+        taskManager.addTask(new Task(ids(), "Task2", "", Status.IN_PROGRESS));
+        taskManager.addTask(new Task(ids(), "Task3", "", Status.DONE));
 
         assertTrue(taskManager.getPrioritizedTasks().isEmpty());
     }
@@ -91,7 +195,7 @@ abstract class TaskManagerTest<T extends TaskManager> {
     @Test
     public void prioritizedTasksShouldBeNonEmptyWhenAddsTasksWithStartTime() {
         taskManager.clearAllData();
-        taskManager.addTask(new Task("Task", "", "NEW", "08.05.2024 05:00", 60));
+        taskManager.addTask(new Task(ids(), "Task", "", "NEW", "08.05.2024 05:00", 60));
 
         assertFalse(taskManager.getPrioritizedTasks().isEmpty());
     }
@@ -99,10 +203,10 @@ abstract class TaskManagerTest<T extends TaskManager> {
     @Test
     public void prioritizedTasksShouldBeSortedByStartTime() {
         taskManager.clearAllData();
-        taskManager.addTask(new Task("Task1", "", "NEW", "08.05.2024 08:00", 60));
-        taskManager.addTask(new Task("Task2", "", "NEW", "08.05.2024 07:00", 60));
-        taskManager.addTask(new Task("Task3", "", "NEW", "08.05.2024 06:00", 60));
-        taskManager.addTask(new Task("Task4", "", "NEW", "08.05.2024 05:00", 60));
+        taskManager.addTask(new Task(ids(), "Task1", "", "NEW", "08.05.2024 08:00", 60));
+        taskManager.addTask(new Task(ids(), "Task2", "", "NEW", "08.05.2024 07:00", 60));
+        taskManager.addTask(new Task(ids(), "Task3", "", "NEW", "08.05.2024 06:00", 60));
+        taskManager.addTask(new Task(ids(), "Task4", "", "NEW", "08.05.2024 05:00", 60));
 
         List<Task> prioritizedTasks = taskManager.getPrioritizedTasks().stream().toList();
         for (int i = 1; i < prioritizedTasks.size(); i++) {
@@ -111,14 +215,38 @@ abstract class TaskManagerTest<T extends TaskManager> {
         }
     }
 
+    @Test
+    public void prioritizedRangeShouldReturnOverlappingTasksPageByPage() {
+        taskManager.clearAllData();
+        Task task1 = new Task(ids(), "Task1", "", "NEW", "08.05.2024 05:00", 120);
+        Task task2 = new Task(ids(), "Task2", "", "NEW", "08.05.2024 08:00", 60);
+        Task task3 = new Task(ids(), "Task3", "", "NEW", "08.05.2024 10:00", 60);
+        Task task4 = new Task(ids(), "Task4", "", "NEW", "08.05.2024 12:00", 60);
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+        taskManager.addTask(task3);
+        taskManager.addTask(task4);
+        LocalDateTime from = LocalDateTime.parse("08.05.2024 06:00", Task.DATE_TIME_FORMATTER);
+        LocalDateTime to = LocalDateTime.parse("08.05.2024 12:00", Task.DATE_TIME_FORMATTER);
+
+        assertEquals(List.of(task1, task2, task3), taskManager.getPrioritizedTasks(from, to, 0, null));
+
+        List<Task> firstPage = taskManager.getPrioritizedTasks(from, to, 2, null);
+        assertEquals(List.of(task1, task2), firstPage);
+        List<Task> secondPage = taskManager.getPrioritizedTasks(from, to, 2, firstPage.getLast().getStartTime());
+        assertEquals(List.of(task3), secondPage);
+
+        assertEquals(List.of(task4), taskManager.getPrioritizedTasks(to, null, 0, null));
+    }
+
     @Test
     public void epicStarTimeShouldBeEqualsToEarliestSubtaskStartTime() {
         String firstStartTime = "15.04.2024 18:25";
         String lastStartTime = "21.06.2024 11:50";
 
-        Epic epic = new Epic("Epic", "");
-        Subtask firstSubtask = new Subtask("Subtask1", "", "DONE", firstStartTime, 60, epic.getId());
-        Subtask lastSubtask = new Subtask("Subtask2", "", "IN_PROGRESS", lastStartTime, 10, epic.getId());
+        Epic epic = new Epic(ids(), "Epic", "");
+        Subtask firstSubtask = new Subtask(ids(), "Subtask1", "", "DONE", firstStartTime, 60, epic.getId());
+        Subtask lastSubtask = new Subtask(ids(), "Subtask2", "", "IN_PROGRESS", lastStartTime, 10, epic.getId());
         taskManager.addEpic(epic);
         taskManager.addSubtask(firstSubtask);
         taskManager.addSubtask(lastSubtask);
@@ -131,9 +259,9 @@ abstract class TaskManagerTest<T extends TaskManager> {
         String firstStartTime = "18.03.2024 23:00";
         String lastStartTime = "28.07.2024 13:30";
 
-        Epic epic = new Epic("Epic", "");
-        Subtask firstSubtask = new Subtask("Subtask1", "", "DONE", firstStartTime, 60, epic.getId());
-        Subtask lastSubtask = new Subtask("Subtask2", "", "IN_PROGRESS", lastStartTime, 10, epic.getId());
+        Epic epic = new Epic(ids(), "Epic", "");
+        Subtask firstSubtask = new Subtask(ids(), "Subtask1", "", "DONE", firstStartTime, 60, epic.getId());
+        Subtask lastSubtask = new Subtask(ids(), "Subtask2", "", "IN_PROGRESS", lastStartTime, 10, epic.getId());
         taskManager.addEpic(epic);
         taskManager.addSubtask(firstSubtask);
         taskManager.addSubtask(lastSubtask);
@@ -146,13 +274,53 @@ abstract class TaskManagerTest<T extends TaskManager> {
         String firstStartTime = "09.01.2024 03:20";
         String lastStartTime = "22.03.2024 15:30";
 
-        Epic epic = new Epic("Epic", "");
-        Subtask firstSubtask = new Subtask("Subtask1", "", "DONE", firstStartTime, 60, epic.getId());
-        Subtask lastSubtask = new Subtask("Subtask2", "", "IN_PROGRESS", lastStartTime, 10, epic.getId());
+        Epic epic = new Epic(ids(), "Epic", "");
+        Subtask firstSubtask = new Subtask(ids(), "Subtask1", "", "DONE", firstStartTime, 60, epic.getId());
+        Subtask lastSubtask = new Subtask(ids(), "Subtask2", "", "IN_PROGRESS", lastStartTime, 10, epic.getId());
         taskManager.addEpic(epic);
         taskManager.addSubtask(firstSubtask);
         taskManager.addSubtask(lastSubtask);
 
         assertEquals(epic.getDuration(), firstSubtask.getDuration().plus(lastSubtask.getDuration()));
     }
+
+    @Test
+    public void epicFieldsShouldFollowSubtaskUpdatesAndRemovals() {
+        Epic epic = new Epic(ids(), "Epic", "");
+        taskManager.addEpic(epic);
+        Subtask firstSubtask = new Subtask(ids(), "Subtask1", "", "DONE", "10.02.2024 10:00", 60, epic.getId());
+        Subtask lastSubtask = new Subtask(ids(), "Subtask2", "", "NEW", "12.02.2024 10:00", 30, epic.getId());
+        taskManager.addSubtask(firstSubtask);
+        taskManager.addSubtask(lastSubtask);
+
+        taskManager.updateSubtask(new Subtask(lastSubtask.getId(), "Subtask2", "", Status.DONE,
+                lastSubtask.getStartTime().plusDays(1), lastSubtask.getDuration(), epic.getId()));
+        assertEquals(Status.DONE, epic.getStatus());
+        assertEquals(lastSubtask.getEndTime().plusDays(1), epic.getEndTime());
+
+        taskManager.removeSubtask(firstSubtask.getId());
+        assertEquals(lastSubtask.getStartTime().plusDays(1), epic.getStartTime());
+        assertEquals(lastSubtask.getDuration(), epic.getDuration());
+
+        taskManager.removeSubtask(lastSubtask.getId());
+        assertEquals(Status.NEW, epic.getStatus());
+        assertNull(epic.getStartTime());
+    }
+
+    @Test
+    public void readViewsShouldNotCopyOrTouchHistory() {
+        taskManager.clearAllData();
+        Task task = new Task(ids(), "Task", "");
+        taskManager.addTask(task);
+        Map<Integer, Task> tasksView = taskManager.getTasksView();
+
+        assertTrue(taskManager.containsTask(task.getId()));
+        assertEquals(task, taskManager.findTask(task.getId()));
+        assertTrue(taskManager.getHistory().isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> tasksView.remove(task.getId()));
+
+        taskManager.removeTask(task.getId());
+        assertTrue(tasksView.isEmpty());
+        assertEquals(0, taskManager.getTasksCount());
+    }
 }